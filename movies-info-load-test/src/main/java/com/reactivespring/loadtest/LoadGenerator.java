@@ -0,0 +1,136 @@
+package com.reactivespring.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Open model: request i is due at start + i / rate and is started then, however many requests are still
+// outstanding, so a slow service builds up a queue instead of slowing the load down.
+// Latency is measured from the time a request was due, not from when it was actually sent, so a request
+// delayed by a stalled generator or client still counts its wait (no coordinated omission).
+public class LoadGenerator {
+
+    private static final Duration TICK = Duration.ofMillis(1);
+
+    private final double rate;
+    private final int maxInFlight;
+
+    public LoadGenerator(double rate, int maxInFlight) {
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Result run(Duration duration, Supplier<Operation> nextOperation, Function<Operation, Mono<?>> execute) {
+        var result = new Result();
+        var requests = (long) (duration.toNanos() / 1e9 * rate);
+        if (requests == 0) {
+            return result;
+        }
+        var inFlight = new AtomicInteger();
+        var started = new long[1];
+        var start = System.nanoTime();
+        Flux.interval(Duration.ZERO, TICK)
+                // A missed tick only delays requests, the next one starts every request that has become due
+                .onBackpressureDrop()
+                .concatMapIterable(tick -> {
+                    var due = Math.min(requests, (long) ((System.nanoTime() - start) / 1e9 * rate) + 1);
+                    var batch = new ArrayList<Long>();
+                    for (; started[0] < due; started[0]++) {
+                        batch.add(started[0]);
+                    }
+                    return batch;
+                })
+                .take(requests)
+                .flatMap(request -> {
+                    var operation = nextOperation.get();
+                    var dueAt = start + (long) (request * 1e9 / rate);
+                    if (inFlight.incrementAndGet() > maxInFlight) {
+                        inFlight.decrementAndGet();
+                        result.dropped.incrementAndGet();
+                        return Mono.empty();
+                    }
+                    return execute.apply(operation)
+                            .then()
+                            .doOnSuccess(ignored -> result.recordSuccess(operation, System.nanoTime() - dueAt))
+                            .onErrorResume(ex -> {
+                                result.recordError(operation);
+                                return Mono.empty();
+                            })
+                            .doFinally(signalType -> inFlight.decrementAndGet());
+                }, Integer.MAX_VALUE)
+                .blockLast();
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public static class Result {
+
+        private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+        private final AtomicLong dropped = new AtomicLong();
+        private long elapsedNanos;
+
+        Result() {
+            for (var operation : Operation.values()) {
+                // 1 microsecond to 1 hour, 3 significant digits
+                latencies.put(operation, new ConcurrentHistogram(1_000L, 3_600_000_000_000L, 3));
+                errors.put(operation, new AtomicLong());
+            }
+        }
+
+        private void recordSuccess(Operation operation, long latencyNanos) {
+            latencies.get(operation).recordValue(Math.max(1_000L, Math.min(latencyNanos, 3_600_000_000_000L)));
+        }
+
+        private void recordError(Operation operation) {
+            errors.get(operation).incrementAndGet();
+        }
+
+        public Histogram latencies(Operation operation) {
+            return latencies.get(operation);
+        }
+
+        public Histogram latencies() {
+            var all = new Histogram(1_000L, 3_600_000_000_000L, 3);
+            latencies.values().forEach(all::add);
+            return all;
+        }
+
+        public long errors(Operation operation) {
+            return errors.get(operation).get();
+        }
+
+        public long errors() {
+            return errors.values().stream().mapToLong(AtomicLong::get).sum();
+        }
+
+        public long dropped() {
+            return dropped.get();
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public List<Operation> operations() {
+            var operations = new ArrayList<Operation>();
+            for (var operation : Operation.values()) {
+                if (latencies.get(operation).getTotalCount() > 0 || errors(operation) > 0) {
+                    operations.add(operation);
+                }
+            }
+            return operations;
+        }
+    }
+}
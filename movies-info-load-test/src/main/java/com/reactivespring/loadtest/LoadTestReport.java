@@ -0,0 +1,63 @@
+package com.reactivespring.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+// Written as JSON to loadtest.report, one file per run, so two runs can be diffed or compared by a script.
+// Latencies are in milliseconds, rates per second of the measured phase, warmup excluded.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoadTestReport {
+
+    private String label;
+    private String startedAt;
+    private Map<String, Object> settings;
+    private long catalogSize;
+    private long requests;
+    private long errors;
+    private long dropped;
+    private double throughput;
+    private Latency latency;
+    private Map<String, OperationReport> operations;
+    // bytes allocated by the whole JVM, service and load generator, per second
+    private double allocationRate;
+    private long gcCount;
+    private long gcTimeMillis;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Latency {
+        private double p50;
+        private double p99;
+        private double p999;
+        private double max;
+
+        public static Latency of(Histogram histogram) {
+            return new Latency(
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 1e3) / 1e3;
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class OperationReport {
+        private long requests;
+        private long errors;
+        private double throughput;
+        private Latency latency;
+    }
+}
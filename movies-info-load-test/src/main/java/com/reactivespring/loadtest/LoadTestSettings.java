@@ -0,0 +1,67 @@
+package com.reactivespring.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Read from -Dloadtest.* system properties, every one has a default so a plain run works
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoadTestSettings {
+
+    // movie infos written through /v1/movieinfos/bulk before the load starts
+    private int catalogSize;
+    // requests started per second, whether or not the earlier ones have completed
+    private double rate;
+    private Duration warmup;
+    private Duration duration;
+    // relative weight of each operation
+    private Map<Operation, Integer> mix;
+    // requests started while this many are outstanding are counted as dropped instead
+    private int maxInFlight;
+    // same seed, same catalog and same request sequence
+    private long seed;
+    private String mongoVersion;
+    private String report;
+    // free text stored in the report, e.g. the commit
+    private String label;
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.parseInt(System.getProperty("loadtest.catalog-size", "10000")),
+                Double.parseDouble(System.getProperty("loadtest.rate", "200")),
+                Duration.parse("PT" + System.getProperty("loadtest.warmup", "10s")),
+                Duration.parse("PT" + System.getProperty("loadtest.duration", "30s")),
+                parseMix(System.getProperty("loadtest.mix", "get-by-id:60,page:10,by-year:10,search:10,batch-get:5,create:5")),
+                Integer.parseInt(System.getProperty("loadtest.max-in-flight", "2000")),
+                Long.parseLong(System.getProperty("loadtest.seed", "42")),
+                System.getProperty("loadtest.mongo-version", "3.5.5"),
+                System.getProperty("loadtest.report", "build/load-test/report.json"),
+                System.getProperty("loadtest.label", ""));
+    }
+
+    // name:weight pairs, e.g. get-by-id:80,search:20
+    static Map<Operation, Integer> parseMix(String mix) {
+        var weights = new LinkedHashMap<Operation, Integer>();
+        for (var entry : mix.split(",")) {
+            var parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("loadtest.mix entry must be name:weight, was " + entry);
+            }
+            var weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("loadtest.mix weight must not be negative, was " + entry);
+            }
+            weights.put(Operation.fromName(parts[0].trim()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("loadtest.mix needs at least one positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,140 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.reactivespring.MoviesInfoServiceApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.stream.Collectors;
+
+// Boots movies-info-service on embedded Mongo in this JVM, seeds the catalog, runs the warmup and then the
+// measured open-model load, and writes a LoadTestReport. Run with ./gradlew :movies-info-load-test:loadTest.
+@Slf4j
+public class MoviesInfoLoadTest {
+
+    public static void main(String[] args) throws IOException {
+        var settings = LoadTestSettings.fromSystemProperties();
+        var startedAt = Instant.now();
+        try (var context = start(settings)) {
+            var scenario = new MoviesInfoScenario(webClient(context, settings), settings.getSeed());
+            var catalogSize = scenario.seed(settings.getCatalogSize()).block();
+            log.info("Seeded {} movie infos", catalogSize);
+
+            var generator = new LoadGenerator(settings.getRate(), settings.getMaxInFlight());
+            var operations = scenario.operations(settings.getMix());
+            generator.run(settings.getWarmup(), operations, scenario::execute);
+
+            var gcCountStart = gcCount();
+            var gcTimeStart = gcTimeMillis();
+            var allocatedStart = allocatedBytes();
+            var result = generator.run(settings.getDuration(), operations, scenario::execute);
+            var allocated = allocatedBytes() - allocatedStart;
+
+            var report = report(settings, startedAt, catalogSize, result);
+            report.setAllocationRate(Math.round(allocated / (result.elapsedNanos() / 1e9)));
+            report.setGcCount(gcCount() - gcCountStart);
+            report.setGcTimeMillis(gcTimeMillis() - gcTimeStart);
+            write(report, Path.of(settings.getReport()));
+        }
+    }
+
+    private static ConfigurableApplicationContext start(LoadTestSettings settings) {
+        // Command line arguments, so they win over the local profile of application.yml
+        return new SpringApplicationBuilder(MoviesInfoServiceApplication.class)
+                .run("--spring.profiles.active=loadtest",
+                        "--server.port=0",
+                        "--spring.mongodb.embedded.version=" + settings.getMongoVersion(),
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.reactivespring.loadtest=INFO");
+    }
+
+    private static WebClient webClient(ConfigurableApplicationContext context, LoadTestSettings settings) {
+        var port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+        // One connection per request in flight, an open model must not queue for a connection
+        var connections = ConnectionProvider.builder("load-test")
+                .maxConnections(settings.getMaxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        // The application's builder, its codecs are configured like the service's
+        return context.getBean(WebClient.Builder.class)
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+    }
+
+    private static LoadTestReport report(LoadTestSettings settings, Instant startedAt, long catalogSize,
+                                         LoadGenerator.Result result) {
+        var seconds = result.elapsedNanos() / 1e9;
+        var operations = new LinkedHashMap<String, LoadTestReport.OperationReport>();
+        for (var operation : result.operations()) {
+            var latencies = result.latencies(operation);
+            operations.put(operation.getName(), new LoadTestReport.OperationReport(
+                    latencies.getTotalCount() + result.errors(operation),
+                    result.errors(operation),
+                    Math.round(latencies.getTotalCount() / seconds * 10) / 10.0,
+                    LoadTestReport.Latency.of(latencies)));
+        }
+        var latencies = result.latencies();
+        var settingsReport = new LinkedHashMap<String, Object>();
+        settingsReport.put("catalogSize", settings.getCatalogSize());
+        settingsReport.put("rate", settings.getRate());
+        settingsReport.put("warmup", settings.getWarmup().toString());
+        settingsReport.put("duration", settings.getDuration().toString());
+        settingsReport.put("mix", settings.getMix().entrySet().stream()
+                .map(weight -> weight.getKey().getName() + ":" + weight.getValue())
+                .collect(Collectors.joining(",")));
+        settingsReport.put("maxInFlight", settings.getMaxInFlight());
+        settingsReport.put("seed", settings.getSeed());
+        settingsReport.put("mongoVersion", settings.getMongoVersion());
+        settingsReport.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        settingsReport.put("javaVersion", System.getProperty("java.version"));
+        return new LoadTestReport(settings.getLabel(), startedAt.toString(), settingsReport, catalogSize,
+                latencies.getTotalCount() + result.errors(), result.errors(), result.dropped(),
+                Math.round(latencies.getTotalCount() / seconds * 10) / 10.0,
+                LoadTestReport.Latency.of(latencies), operations, 0, 0, 0);
+    }
+
+    private static void write(LoadTestReport report, Path path) throws IOException {
+        var json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, json);
+        log.info("Report written to {}\n{}", path.toAbsolutePath(), json);
+    }
+
+    // Threads that ended during the run are missing from the sum
+    private static long allocatedBytes() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return Arrays.stream(threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+                .filter(bytes -> bytes > 0)
+                .sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long gcTimeMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+}
@@ -0,0 +1,125 @@
+package com.reactivespring.loadtest;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// The catalog and the requests of a load test run, all drawn from one seeded Random.
+// The generator calls operations() and execute() one request at a time, so the Random needs no locking.
+public class MoviesInfoScenario {
+
+    private static final String MOVIE_INFOS = "/v1/movieinfos";
+
+    private static final List<String> WORDS = List.of("dark", "knight", "rises", "batman", "begins", "night",
+            "city", "return", "last", "empire", "star", "river", "storm", "shadow", "silent", "golden", "iron",
+            "winter", "summer", "lost", "road", "king", "queen", "house", "dream", "fire", "ice", "ocean", "moon", "sun");
+
+    private static final int FIRST_YEAR = 1950;
+    private static final int YEARS = 73;
+    private static final int CAST_MEMBERS = 500;
+
+    private final WebClient webClient;
+    private final Random random;
+    private final List<String> movieInfoIds = new ArrayList<>();
+
+    public MoviesInfoScenario(WebClient webClient, long seed) {
+        this.webClient = webClient;
+        this.random = new Random(seed);
+    }
+
+    // Writes catalogSize movie infos with the ids m0, m1, ... through the bulk endpoint, returns how many were created
+    public Mono<Long> seed(int catalogSize) {
+        var movieInfos = Flux.range(0, catalogSize)
+                .map(i -> movieInfo("m" + i));
+        return webClient.post()
+                .uri(MOVIE_INFOS + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(movieInfos, MovieInfo.class)
+                .retrieve()
+                .bodyToFlux(MovieInfoBulkResult.class)
+                .filter(result -> result.getStatus() == MovieInfoBulkResult.Status.CREATED)
+                .doOnNext(result -> movieInfoIds.add(result.getMovieInfoId()))
+                .count();
+    }
+
+    public Supplier<Operation> operations(Map<Operation, Integer> mix) {
+        var total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        return () -> {
+            var pick = random.nextInt(total);
+            for (var weight : mix.entrySet()) {
+                pick -= weight.getValue();
+                if (pick < 0) {
+                    return weight.getKey();
+                }
+            }
+            throw new IllegalStateException("mix weights changed");
+        };
+    }
+
+    public Mono<?> execute(Operation operation) {
+        switch (operation) {
+            case GET_BY_ID:
+                return get(MOVIE_INFOS + "/" + randomId());
+            case PAGE:
+                return get(MOVIE_INFOS + "?limit=50&after=" + randomId());
+            case BY_YEAR:
+                return get(MOVIE_INFOS + "?limit=20&year=" + (FIRST_YEAR + random.nextInt(YEARS)));
+            case SEARCH:
+                return get(MOVIE_INFOS + "/search?q=" + WORDS.get(random.nextInt(WORDS.size())));
+            case BATCH_GET:
+                var ids = IntStream.range(0, 20)
+                        .mapToObj(i -> randomId())
+                        .collect(Collectors.toList());
+                return webClient.post()
+                        .uri(MOVIE_INFOS + "/batch-get")
+                        .bodyValue(ids)
+                        .retrieve()
+                        .toBodilessEntity();
+            case CREATE:
+                // The service assigns the id, created movie infos are not picked by the other operations
+                return webClient.post()
+                        .uri(MOVIE_INFOS)
+                        .bodyValue(movieInfo(null))
+                        .retrieve()
+                        .toBodilessEntity();
+            default:
+                throw new IllegalArgumentException("unknown operation " + operation);
+        }
+    }
+
+    // The body is read and discarded, a non 2xx status is an error
+    private Mono<?> get(String uri) {
+        return webClient.get()
+                .uri(uri)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    private String randomId() {
+        return movieInfoIds.get(random.nextInt(movieInfoIds.size()));
+    }
+
+    private MovieInfo movieInfo(String movieInfoId) {
+        var name = IntStream.range(0, 1 + random.nextInt(3))
+                .mapToObj(i -> WORDS.get(random.nextInt(WORDS.size())))
+                .collect(Collectors.joining(" "));
+        var year = FIRST_YEAR + random.nextInt(YEARS);
+        var cast = IntStream.range(0, 1 + random.nextInt(4))
+                .mapToObj(i -> "Actor " + random.nextInt(CAST_MEMBERS) + " " + WORDS.get(random.nextInt(WORDS.size())))
+                .collect(Collectors.toList());
+        return new MovieInfo(movieInfoId, name, year, cast, LocalDate.of(year, 1 + random.nextInt(12), 1 + random.nextInt(28)));
+    }
+}
@@ -0,0 +1,33 @@
+package com.reactivespring.loadtest;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+// The requests the load is made of, see MoviesInfoScenario for what each one sends
+public enum Operation {
+
+    GET_BY_ID("get-by-id"),
+    PAGE("page"),
+    BY_YEAR("by-year"),
+    SEARCH("search"),
+    BATCH_GET("batch-get"),
+    CREATE("create");
+
+    private final String name;
+
+    Operation(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Operation fromName(String name) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("unknown operation " + name + ", expected one of "
+                        + Arrays.stream(values()).map(Operation::getName).collect(Collectors.joining(","))));
+    }
+}
@@ -0,0 +1,68 @@
+package com.reactivespring.loadtest;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadGeneratorTest {
+
+    @Test
+    void startsRateTimesDurationRequests() {
+        var generator = new LoadGenerator(500, 1000);
+
+        var result = generator.run(Duration.ofMillis(400), () -> Operation.GET_BY_ID,
+                operation -> Mono.delay(Duration.ofMillis(5)));
+
+        assertEquals(200, result.latencies(Operation.GET_BY_ID).getTotalCount());
+        assertEquals(0, result.errors());
+        assertEquals(0, result.dropped());
+        // Latency is taken from the time a request was due, a 5ms response cannot be faster than that
+        assertTrue(result.latencies().getMinValue() >= 5_000_000L);
+        assertTrue(result.elapsedNanos() >= Duration.ofMillis(400).toNanos());
+    }
+
+    @Test
+    void doesNotWaitForOutstandingRequests() {
+        // 100 requests of 300ms each, a closed model with 10 workers would need 3 seconds
+        var generator = new LoadGenerator(1000, 1000);
+
+        var result = generator.run(Duration.ofMillis(100), () -> Operation.SEARCH,
+                operation -> Mono.delay(Duration.ofMillis(300)));
+
+        assertEquals(100, result.latencies(Operation.SEARCH).getTotalCount());
+        assertTrue(result.elapsedNanos() < Duration.ofSeconds(2).toNanos());
+    }
+
+    @Test
+    void dropsRequestsBeyondMaxInFlight() {
+        var generator = new LoadGenerator(1000, 10);
+
+        var result = generator.run(Duration.ofMillis(100), () -> Operation.PAGE,
+                operation -> Mono.delay(Duration.ofSeconds(1)));
+
+        assertEquals(10, result.latencies(Operation.PAGE).getTotalCount());
+        assertEquals(90, result.dropped());
+    }
+
+    @Test
+    void countsErrorsPerOperation() {
+        var generator = new LoadGenerator(1000, 1000);
+        var requests = new AtomicInteger();
+
+        var result = generator.run(Duration.ofMillis(100),
+                () -> requests.getAndIncrement() % 2 == 0 ? Operation.CREATE : Operation.BATCH_GET,
+                operation -> operation == Operation.CREATE
+                        ? Mono.error(new IllegalStateException("503"))
+                        : Mono.just("ok"));
+
+        assertEquals(50, result.errors(Operation.CREATE));
+        assertEquals(50, result.latencies(Operation.BATCH_GET).getTotalCount());
+        assertEquals(0, result.latencies(Operation.CREATE).getTotalCount());
+        assertEquals(2, result.operations().size());
+    }
+}
@@ -0,0 +1,28 @@
+package com.reactivespring.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadTestSettingsTest {
+
+    @Test
+    void parseMix() {
+        var mix = LoadTestSettings.parseMix("get-by-id:80, search:20,create:0");
+
+        assertEquals(Map.of(Operation.GET_BY_ID, 80, Operation.SEARCH, 20, Operation.CREATE, 0), mix);
+        assertEquals(List.of(Operation.GET_BY_ID, Operation.SEARCH, Operation.CREATE), List.copyOf(mix.keySet()));
+    }
+
+    @Test
+    void parseMix_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> LoadTestSettings.parseMix("get-by-id"));
+        assertThrows(IllegalArgumentException.class, () -> LoadTestSettings.parseMix("delete:10"));
+        assertThrows(IllegalArgumentException.class, () -> LoadTestSettings.parseMix("search:-1"));
+        assertThrows(IllegalArgumentException.class, () -> LoadTestSettings.parseMix("search:0"));
+    }
+}
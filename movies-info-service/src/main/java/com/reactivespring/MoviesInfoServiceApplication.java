@@ -2,12 +2,16 @@ package com.reactivespring;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class MoviesInfoServiceApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(MoviesInfoServiceApplication.class, args);
+		var application = new SpringApplication(MoviesInfoServiceApplication.class);
+		// Records the startup steps for service-startup's StartupConfiguration and the actuator startup endpoint
+		application.setApplicationStartup(new BufferingApplicationStartup(4096));
+		application.run(args);
 	}
 
 }
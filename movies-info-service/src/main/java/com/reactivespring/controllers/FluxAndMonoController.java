@@ -1,5 +1,6 @@
 package com.reactivespring.controllers;
 
+import com.reactivespring.operator.SignalTracer;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -12,6 +13,12 @@ import java.time.Duration;
 @RestController
 public class FluxAndMonoController {
 
+    private final SignalTracer signalTracer;
+
+    public FluxAndMonoController(SignalTracer signalTracer) {
+        this.signalTracer = signalTracer;
+    }
+
     // data handling and request handling are totally done in separate thread
 
     // By default these APIs are non blocking and asynchronous
@@ -30,7 +37,8 @@ public class FluxAndMonoController {
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<Long> stream() {
         // How to return flux from DB or External API
-        return Flux.interval(Duration.ofSeconds(1)).log();
+        return Flux.interval(Duration.ofSeconds(1))
+                .transform(signalTracer.flux("stream"));
     }
 
 }
@@ -0,0 +1,87 @@
+package com.reactivespring.controllers;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// The ETag of a movie info is its quoted version. The conditional requests are answered here as a ResponseEntity
+// for both the annotated and the functional endpoints, MoviesInfoHandler only turns it into a ServerResponse.
+public final class MovieInfoETags {
+
+    private MovieInfoETags() {
+    }
+
+    public static String eTag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    public static ResponseEntity<MovieInfo> ok(MovieInfo movieInfo) {
+        var builder = ResponseEntity.ok();
+        // Documents written before the version field existed have no ETag
+        if (movieInfo.getVersion() != null) {
+            builder.eTag(eTag(movieInfo.getVersion()));
+        }
+        return builder.body(movieInfo);
+    }
+
+    // If-None-Match uses the weak comparison, so W/"1" matches version 1
+    public static boolean matchesAny(String ifNoneMatch, Long version) {
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(eTag(version)));
+    }
+
+    // If-Match uses the strong comparison, a tag that cannot match any version gives null
+    public static Long expectedVersion(String ifMatch) {
+        var tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    // PUT and PATCH. Without If-Match, or with *, a missing movie info is a 404. Otherwise the version is part of the
+    // findAndModify filter, no read is needed to check the precondition and an empty result is a 412.
+    public static Mono<ResponseEntity<MovieInfo>> write(String ifMatch, Supplier<Mono<MovieInfo>> write,
+                                                        Function<Long, Mono<MovieInfo>> writeIfVersion) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return write.get()
+                    .map(MovieInfoETags::ok)
+                    .switchIfEmpty(Mono.fromSupplier(() -> ResponseEntity.notFound().build()));
+        }
+        var expectedVersion = expectedVersion(ifMatch);
+        if (expectedVersion == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        return writeIfVersion.apply(expectedVersion)
+                .map(MovieInfoETags::ok)
+                .switchIfEmpty(Mono.fromSupplier(() -> ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build()));
+    }
+
+    // DELETE, deleting a movie info that does not exist is not an error without If-Match
+    public static Mono<ResponseEntity<Void>> delete(String ifMatch, Supplier<Mono<Void>> delete,
+                                                    Function<Long, Mono<Boolean>> deleteIfVersion) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return delete.get()
+                    .then(Mono.fromSupplier(() -> ResponseEntity.noContent().build()));
+        }
+        var expectedVersion = expectedVersion(ifMatch);
+        if (expectedVersion == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        return deleteIfVersion.apply(expectedVersion)
+                .map(deleted -> deleted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).<Void>build());
+    }
+}
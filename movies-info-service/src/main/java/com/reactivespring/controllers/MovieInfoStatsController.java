@@ -0,0 +1,35 @@
+package com.reactivespring.controllers;
+
+import com.reactivespring.domain.MovieInfoCount;
+import com.reactivespring.service.MovieInfoStatsService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/v1/movieinfos/stats")
+public class MovieInfoStatsController {
+
+    private final MovieInfoStatsService movieInfoStatsService;
+
+    public MovieInfoStatsController(MovieInfoStatsService movieInfoStatsService) {
+        this.movieInfoStatsService = movieInfoStatsService;
+    }
+
+    @GetMapping(value = "/years", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MovieInfoCount<Integer>> countByYear() {
+        return movieInfoStatsService.countByYear();
+    }
+
+    @GetMapping(value = "/decades", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MovieInfoCount<Integer>> countByDecade() {
+        return movieInfoStatsService.countByDecade();
+    }
+
+    @GetMapping(value = "/cast", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MovieInfoCount<String>> countByCastMember() {
+        return movieInfoStatsService.countByCastMember();
+    }
+}
@@ -1,23 +1,42 @@
 package com.reactivespring.controllers;
 
+import com.reactivespring.operator.SignalTracer;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.service.MovieInfoFields;
 import com.reactivespring.service.MoviesInfoService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.util.List;
 
+import static com.reactivespring.controllers.MovieInfoETags.eTag;
+import static com.reactivespring.controllers.MovieInfoETags.matchesAny;
+
+// The default stack, movieinfo.web.stack=functional serves the same API from MoviesInfoRouter instead
 @RestController
 @RequestMapping("/v1")
+@ConditionalOnProperty(name = "movieinfo.web.stack", havingValue = "annotated", matchIfMissing = true)
 public class MoviesInfoController {
 
     private MoviesInfoService movieInfoService;
 
-    public MoviesInfoController(MoviesInfoService movieInfoService) {
+    private final SignalTracer signalTracer;
+
+    public MoviesInfoController(MoviesInfoService movieInfoService, SignalTracer signalTracer) {
         this.movieInfoService = movieInfoService;
+        this.signalTracer = signalTracer;
     }
 
     @PostMapping("/movieinfos")
@@ -26,9 +45,97 @@ public class MoviesInfoController {
         return movieInfoService.addMovieInfo(movieInfo);
     }
 
+    // Accepts one MovieInfo per line and streams back one result per line as the batches are written
+    @PostMapping(value = "/movieinfos/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoBulkResult> addMovieInfos(@RequestBody Flux<MovieInfo> movieInfos) {
+        return movieInfoService.addMovieInfos(movieInfos);
+    }
+
+    // One request and one $in query for a list of ids, ids that do not exist are reported as MISSING
+    @PostMapping(value = "/movieinfos/batch-get", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<MovieInfoBatchResult> getMoviesInfoByIds(@RequestBody List<String> ids,
+                                                         @RequestParam(required = false) String fields) {
+        return movieInfoService.getMoviesInfoByIds(ids, MovieInfoFields.parse(fields));
+    }
+
+    @GetMapping(value = "/movieinfos", params = {"!year", "!fromYear", "!toYear", "!namePrefix"})
+    public Flux<MovieInfo> getAllMovies(@RequestParam(required = false) String fields) {
+        return movieInfoService.getAllMoviesInfo(MovieInfoFields.parse(fields));
+    }
+
+    // Each MovieInfo is written as soon as it comes off the cursor instead of being collected into one JSON array
+    @GetMapping(value = "/movieinfos", params = {"!year", "!fromYear", "!toYear", "!namePrefix"},
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<MovieInfo> streamAllMovies(@RequestParam(required = false) String fields) {
+        return movieInfoService.streamAllMoviesInfo(MovieInfoFields.parse(fields));
+    }
+
+    // Keyset pagination, pass the nextCursor of a page as "after" to get the following page
+    @GetMapping(value = "/movieinfos", params = {"limit", "!year", "!fromYear", "!toYear", "!namePrefix"})
+    public Mono<MovieInfoPage> getMoviesInfoPage(@RequestParam int limit,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(required = false) String fields) {
+        return movieInfoService.getMoviesInfoPage(after, limit, MovieInfoFields.parse(fields));
+    }
+
+    // Filtered listings, each one is bounded by an index and paged the same way. Each one excludes the other
+    // filters, a combination of them only matches rejectFilterCombination.
+    @GetMapping(value = "/movieinfos", params = {"year", "!fromYear", "!toYear", "!namePrefix"})
+    public Mono<MovieInfoPage> getMoviesInfoByYear(@RequestParam Integer year,
+                                                   @RequestParam(defaultValue = "100") int limit,
+                                                   @RequestParam(required = false) String after,
+                                                   @RequestParam(required = false) String fields) {
+        return movieInfoService.getMoviesInfoByYear(year, after, limit, MovieInfoFields.parse(fields));
+    }
+
+    // Either bound may be left out for an open-ended range, the toYear only mapping is below
+    @GetMapping(value = "/movieinfos", params = {"fromYear", "!year", "!namePrefix"})
+    public Mono<MovieInfoPage> getMoviesInfoByYearRange(@RequestParam Integer fromYear,
+                                                        @RequestParam(required = false) Integer toYear,
+                                                        @RequestParam(defaultValue = "100") int limit,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestParam(required = false) String fields) {
+        return movieInfoService.getMoviesInfoByYearRange(fromYear, toYear, after, limit, MovieInfoFields.parse(fields));
+    }
+
+    @GetMapping(value = "/movieinfos", params = {"toYear", "!fromYear", "!year", "!namePrefix"})
+    public Mono<MovieInfoPage> getMoviesInfoUpToYear(@RequestParam Integer toYear,
+                                                     @RequestParam(defaultValue = "100") int limit,
+                                                     @RequestParam(required = false) String after,
+                                                     @RequestParam(required = false) String fields) {
+        return movieInfoService.getMoviesInfoByYearRange(null, toYear, after, limit, MovieInfoFields.parse(fields));
+    }
+
+    @GetMapping(value = "/movieinfos", params = {"namePrefix", "!year", "!fromYear", "!toYear"})
+    public Mono<MovieInfoPage> getMoviesInfoByNamePrefix(@RequestParam String namePrefix,
+                                                         @RequestParam(defaultValue = "100") int limit,
+                                                         @RequestParam(required = false) String after,
+                                                         @RequestParam(required = false) String fields) {
+        return movieInfoService.getMoviesInfoByNamePrefix(namePrefix, after, limit, MovieInfoFields.parse(fields));
+    }
+
+    // Has no params condition, so it only wins when every mapping above is ruled out by its negations
     @GetMapping("/movieinfos")
-    public Flux<MovieInfo> getAllMovies() {
-        return movieInfoService.getAllMoviesInfo();
+    public Mono<MovieInfoPage> rejectFilterCombination() {
+        return MoviesInfoService.rejectFilterCombination();
+    }
+
+    @GetMapping(value = "/movieinfos/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MovieInfoEvent>> streamMovieInfoEvents() {
+        return movieInfoService.streamMovieInfoServerSentEvents();
+    }
+
+    @GetMapping(value = "/movieinfos/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoEvent> streamMovieInfoEventsAsNdjson() {
+        return movieInfoService.streamMovieInfoEvents();
+    }
+
+    @GetMapping("/movieinfos/search")
+    public Flux<MovieInfo> searchMoviesInfo(@RequestParam String q,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size,
+                                            @RequestParam(required = false) String fields) {
+        return movieInfoService.searchMoviesInfo(q, page, size, MovieInfoFields.parse(fields));
     }
 
 //    @GetMapping("/movieinfos/{id}")
@@ -37,9 +144,20 @@ public class MoviesInfoController {
 //    }
 
     @GetMapping("/movieinfos/{id}")
-    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable String id) {
-        return movieInfoService.getMovieInfoById(id)
-                .map(ResponseEntity::ok).switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable String id,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                            @RequestParam(required = false) String fields) {
+        var movieInfo = movieInfoService.getMovieInfoById(id, MovieInfoFields.parse(fields))
+                .map(MovieInfoETags::ok)
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+        if (ifNoneMatch == null) {
+            return movieInfo;
+        }
+        // Check the version first so an unchanged movie info costs a cache lookup or an _id/version projection
+        return movieInfoService.getMovieInfoVersion(id)
+                .filter(version -> matchesAny(ifNoneMatch, version))
+                .map(version -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag(version)).<MovieInfo>build())
+                .switchIfEmpty(movieInfo);
     }
 
 //    @PutMapping("/movieinfos/{id}")
@@ -50,17 +168,28 @@ public class MoviesInfoController {
 
     @PutMapping("/movieinfos/{id}")
     // If we don't specify @ResponseStatus explictly then it is 200 ok always
-    public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody MovieInfo movieInfo, @PathVariable String id) {
-        return movieInfoService.updateMovieInfo(movieInfo, id)
-                .map(ResponseEntity.ok()::body)
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+    public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody @Valid MovieInfo movieInfo, @PathVariable String id,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return MovieInfoETags.write(ifMatch,
+                        () -> movieInfoService.updateMovieInfo(movieInfo, id),
+                        expectedVersion -> movieInfoService.updateMovieInfo(movieInfo, id, expectedVersion))
+                .transform(signalTracer.mono("movieinfo.update"));
+    }
+
+    @PatchMapping("/movieinfos/{id}")
+    public Mono<ResponseEntity<MovieInfo>> patchMovieInfo(@RequestBody MovieInfo movieInfo, @PathVariable String id,
+                                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return MovieInfoETags.write(ifMatch,
+                () -> movieInfoService.patchMovieInfo(movieInfo, id),
+                expectedVersion -> movieInfoService.patchMovieInfo(movieInfo, id, expectedVersion));
     }
 
     @DeleteMapping("/movieinfos/{id}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> deleteMovieInfo(@PathVariable String id) {
-        return movieInfoService.deleteMovieInfo(id);
+    public Mono<ResponseEntity<Void>> deleteMovieInfo(@PathVariable String id,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return MovieInfoETags.delete(ifMatch,
+                () -> movieInfoService.deleteMovieInfo(id),
+                expectedVersion -> movieInfoService.deleteMovieInfo(id, expectedVersion));
     }
 
 }
@@ -2,9 +2,10 @@ package com.reactivespring.domain;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
-import lombok.Getter;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -17,6 +18,9 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document
+// _id is the tie breaker of the keyset pagination, so each filter + sort is bounded by one index
+@CompoundIndex(name = "year_id", def = "{ 'year': 1, '_id': 1 }")
+@CompoundIndex(name = "name_id", def = "{ 'name': 1, '_id': 1 }")
 public class MovieInfo {
     @Id
     private String movieInfoId;
@@ -27,5 +31,11 @@ public class MovieInfo {
     private Integer year;
     private List<@NotBlank(message = "movieInfo.cast must be present") String> cast;
     private LocalDate releaseDate;
+    // Incremented by Spring Data on every save / findAndModify, served as the ETag
+    @Version
+    private Long version;
 
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate releaseDate) {
+        this(movieInfoId, name, year, cast, releaseDate, null);
+    }
 }
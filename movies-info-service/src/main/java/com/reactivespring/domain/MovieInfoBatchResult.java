@@ -0,0 +1,20 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoBatchResult {
+
+    public enum Status {
+        FOUND, MISSING
+    }
+
+    private String movieInfoId;
+    private Status status;
+    // null for MISSING
+    private MovieInfo movieInfo;
+}
@@ -0,0 +1,21 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoBulkResult {
+
+    public enum Status {
+        CREATED, INVALID, FAILED
+    }
+
+    // position of the document in the request stream
+    private long index;
+    private String movieInfoId;
+    private Status status;
+    private String error;
+}
@@ -0,0 +1,14 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoCount<K> {
+    // the year, decade (e.g. 2000) or cast member the movie infos are grouped by
+    private K key;
+    private long count;
+}
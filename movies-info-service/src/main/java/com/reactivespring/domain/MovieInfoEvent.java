@@ -0,0 +1,25 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    // Increases by one per published event, clients can spot gaps left by a dropping subscription
+    private long sequence;
+    private Type type;
+    private String movieInfoId;
+    // null for DELETED
+    private MovieInfo movieInfo;
+    private Instant timestamp;
+}
@@ -0,0 +1,16 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoPage {
+    private List<MovieInfo> movieInfos;
+    // movieInfoId to pass as "after" for the next page, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,16 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// A MovieInfo cut down by a fields projection. Only this type leaves the null properties out of the JSON,
+// a full MovieInfo keeps writing them as null.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedMovieInfo extends MovieInfo {
+
+    public ProjectedMovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate releaseDate, Long version) {
+        super(movieInfoId, name, year, cast, releaseDate, version);
+    }
+}
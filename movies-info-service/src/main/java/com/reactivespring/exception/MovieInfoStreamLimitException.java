@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class MovieInfoStreamLimitException extends RuntimeException {
+    private String message;
+
+    public MovieInfoStreamLimitException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
@@ -0,0 +1,56 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.MovieInfoDataException;
+import com.reactivespring.exception.MovieInfoStreamLimitException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+// GlobalErrorHandler for the functional stack, @ControllerAdvice only sees annotated controllers.
+// A WebExceptionHandler also gets the errors of a response body Flux that fails before its first element,
+// e.g. the 503 of the event stream, which a router filter would not.
+// Runs before Boot's error handler (order -1), anything else is passed on to it.
+@Component
+@Order(-2)
+@Slf4j
+@ConditionalOnProperty(name = "movieinfo.web.stack", havingValue = "functional")
+public class FunctionalErrorHandler implements WebExceptionHandler {
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        if (ex instanceof MovieInfoDataException) {
+            log.error("Exception caught in handleMovieInfoDataException {}", ex.getMessage(), ex);
+            return write(exchange, HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+        if (ex instanceof DuplicateKeyException) {
+            log.error("Exception caught in handleDuplicateKeyException {}", ex.getMessage(), ex);
+            return write(exchange, HttpStatus.CONFLICT, "movieInfo already exists", ex);
+        }
+        if (ex instanceof MovieInfoStreamLimitException) {
+            log.error("Exception caught in handleMovieInfoStreamLimitException {}", ex.getMessage());
+            return write(exchange, HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), ex);
+        }
+        return Mono.error(ex);
+    }
+
+    private static Mono<Void> write(ServerWebExchange exchange, HttpStatus status, String message, Throwable ex) {
+        var response = exchange.getResponse();
+        // Part of the body has been sent already, the connection is closed by the next handler
+        if (response.isCommitted()) {
+            return Mono.error(ex);
+        }
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        var body = response.bufferFactory().wrap(message.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+}
@@ -1,7 +1,11 @@
 package com.reactivespring.exceptionhandler;
 
+import com.reactivespring.exception.MovieInfoDataException;
+import com.reactivespring.exception.MovieInfoStreamLimitException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -23,4 +27,23 @@ public class GlobalErrorHandler {
         log.error("Error is {}", error);
         return ResponseEntity.badRequest().body(error);
     }
+
+    @ExceptionHandler(MovieInfoDataException.class)
+    public ResponseEntity<String> handleMovieInfoDataException(MovieInfoDataException ex) {
+        log.error("Exception caught in handleMovieInfoDataException {}", ex.getMessage(), ex);
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    // POST with the id of an existing movie info, the insert no longer overwrites it
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<String> handleDuplicateKeyException(DuplicateKeyException ex) {
+        log.error("Exception caught in handleDuplicateKeyException {}", ex.getMessage(), ex);
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("movieInfo already exists");
+    }
+
+    @ExceptionHandler(MovieInfoStreamLimitException.class)
+    public ResponseEntity<String> handleMovieInfoStreamLimitException(MovieInfoStreamLimitException ex) {
+        log.error("Exception caught in handleMovieInfoStreamLimitException {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
 }
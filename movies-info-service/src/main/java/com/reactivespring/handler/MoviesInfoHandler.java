@@ -0,0 +1,250 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.operator.SignalTracer;
+import com.reactivespring.controllers.MovieInfoETags;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.exception.MovieInfoDataException;
+import com.reactivespring.service.MovieInfoFields;
+import com.reactivespring.service.MoviesInfoService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.reactivespring.controllers.MovieInfoETags.eTag;
+import static com.reactivespring.controllers.MovieInfoETags.matchesAny;
+
+// Functional counterpart of MoviesInfoController, same requests and responses.
+// @ControllerAdvice does not apply to router functions, FunctionalErrorHandler maps its exceptions instead.
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "movieinfo.web.stack", havingValue = "functional")
+public class MoviesInfoHandler {
+
+    private static final ParameterizedTypeReference<List<String>> IDS = new ParameterizedTypeReference<>() {
+    };
+
+    private static final ParameterizedTypeReference<ServerSentEvent<MovieInfoEvent>> SERVER_SENT_EVENTS =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final MoviesInfoService movieInfoService;
+
+    private final Validator validator;
+
+    private final SignalTracer signalTracer;
+
+    public MoviesInfoHandler(MoviesInfoService movieInfoService, Validator validator, SignalTracer signalTracer) {
+        this.movieInfoService = movieInfoService;
+        this.validator = validator;
+        this.signalTracer = signalTracer;
+    }
+
+    public Mono<ServerResponse> addMovieInfo(ServerRequest request) {
+        return request.bodyToMono(MovieInfo.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .doOnNext(this::validate)
+                .flatMap(movieInfoService::addMovieInfo)
+                .flatMap(movieInfo -> ServerResponse.status(HttpStatus.CREATED).bodyValue(movieInfo));
+    }
+
+    public Mono<ServerResponse> addMovieInfos(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(movieInfoService.addMovieInfos(request.bodyToFlux(MovieInfo.class)), MovieInfoBulkResult.class);
+    }
+
+    public Mono<ServerResponse> getMoviesInfoByIds(ServerRequest request) {
+        var fields = fields(request);
+        var contentType = request.headers().accept().contains(MediaType.APPLICATION_NDJSON)
+                ? MediaType.APPLICATION_NDJSON
+                : MediaType.APPLICATION_JSON;
+        return request.bodyToMono(IDS)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .flatMap(ids -> ServerResponse.ok()
+                        .contentType(contentType)
+                        .body(movieInfoService.getMoviesInfoByIds(ids, fields), MovieInfoBatchResult.class));
+    }
+
+    public Mono<ServerResponse> getAllMovies(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(movieInfoService.getAllMoviesInfo(fields(request)), MovieInfo.class);
+    }
+
+    public Mono<ServerResponse> streamAllMovies(ServerRequest request) {
+        var contentType = request.headers().accept().contains(MediaType.APPLICATION_NDJSON)
+                ? MediaType.APPLICATION_NDJSON
+                : MediaType.TEXT_EVENT_STREAM;
+        return ServerResponse.ok()
+                .contentType(contentType)
+                .body(movieInfoService.streamAllMoviesInfo(fields(request)), MovieInfo.class);
+    }
+
+    public Mono<ServerResponse> getMoviesInfoPage(ServerRequest request) {
+        return page(movieInfoService.getMoviesInfoPage(after(request), intParam(request, "limit", null), fields(request)));
+    }
+
+    public Mono<ServerResponse> getMoviesInfoByYear(ServerRequest request) {
+        return page(movieInfoService.getMoviesInfoByYear(intParam(request, "year", null), after(request),
+                intParam(request, "limit", 100), fields(request)));
+    }
+
+    public Mono<ServerResponse> getMoviesInfoByYearRange(ServerRequest request) {
+        return page(movieInfoService.getMoviesInfoByYearRange(optionalIntParam(request, "fromYear"),
+                optionalIntParam(request, "toYear"), after(request), intParam(request, "limit", 100), fields(request)));
+    }
+
+    public Mono<ServerResponse> rejectFilterCombination(ServerRequest request) {
+        return page(MoviesInfoService.rejectFilterCombination());
+    }
+
+    public Mono<ServerResponse> getMoviesInfoByNamePrefix(ServerRequest request) {
+        return page(movieInfoService.getMoviesInfoByNamePrefix(request.queryParam("namePrefix").orElseThrow(),
+                after(request), intParam(request, "limit", 100), fields(request)));
+    }
+
+    public Mono<ServerResponse> streamMovieInfoEvents(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(movieInfoService.streamMovieInfoServerSentEvents(), SERVER_SENT_EVENTS);
+    }
+
+    public Mono<ServerResponse> streamMovieInfoEventsAsNdjson(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(movieInfoService.streamMovieInfoEvents(), MovieInfoEvent.class);
+    }
+
+    public Mono<ServerResponse> searchMoviesInfo(ServerRequest request) {
+        var query = request.queryParam("q")
+                .orElseThrow(() -> new ServerWebInputException("Required query parameter 'q' is not present"));
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(movieInfoService.searchMoviesInfo(query, intParam(request, "page", 0),
+                        intParam(request, "size", 20), fields(request)), MovieInfo.class);
+    }
+
+    public Mono<ServerResponse> getMovieInfoById(ServerRequest request) {
+        var id = request.pathVariable("id");
+        var movieInfo = movieInfoService.getMovieInfoById(id, fields(request))
+                .map(MovieInfoETags::ok)
+                .flatMap(MoviesInfoHandler::toServerResponse)
+                .switchIfEmpty(ServerResponse.notFound().build());
+        var ifNoneMatch = request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return movieInfo;
+        }
+        return movieInfoService.getMovieInfoVersion(id)
+                .filter(version -> matchesAny(ifNoneMatch, version))
+                .flatMap(version -> ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag(version)).build())
+                .switchIfEmpty(movieInfo);
+    }
+
+    // The ResponseEntity of MovieInfoETags is traced like MoviesInfoController traces it
+    public Mono<ServerResponse> updateMovieInfo(ServerRequest request) {
+        var id = request.pathVariable("id");
+        var ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+        return request.bodyToMono(MovieInfo.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .doOnNext(this::validate)
+                .flatMap(movieInfo -> MovieInfoETags.write(ifMatch,
+                                () -> movieInfoService.updateMovieInfo(movieInfo, id),
+                                expectedVersion -> movieInfoService.updateMovieInfo(movieInfo, id, expectedVersion))
+                        .transform(signalTracer.mono("movieinfo.update")))
+                .flatMap(MoviesInfoHandler::toServerResponse);
+    }
+
+    public Mono<ServerResponse> patchMovieInfo(ServerRequest request) {
+        var id = request.pathVariable("id");
+        var ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+        return request.bodyToMono(MovieInfo.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .flatMap(movieInfo -> MovieInfoETags.write(ifMatch,
+                        () -> movieInfoService.patchMovieInfo(movieInfo, id),
+                        expectedVersion -> movieInfoService.patchMovieInfo(movieInfo, id, expectedVersion)))
+                .flatMap(MoviesInfoHandler::toServerResponse);
+    }
+
+    public Mono<ServerResponse> deleteMovieInfo(ServerRequest request) {
+        var id = request.pathVariable("id");
+        return MovieInfoETags.delete(request.headers().firstHeader(HttpHeaders.IF_MATCH),
+                        () -> movieInfoService.deleteMovieInfo(id),
+                        expectedVersion -> movieInfoService.deleteMovieInfo(id, expectedVersion))
+                .flatMap(MoviesInfoHandler::toServerResponse);
+    }
+
+    // Same body as a failed @Valid, the violation messages sorted and comma separated
+    private void validate(MovieInfo movieInfo) {
+        var violations = validator.validate(movieInfo);
+        if (!violations.isEmpty()) {
+            var error = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(","));
+            log.error("Error is {}", error);
+            throw new MovieInfoDataException(error);
+        }
+    }
+
+    private static Mono<ServerResponse> toServerResponse(ResponseEntity<?> entity) {
+        var builder = ServerResponse.status(entity.getStatusCode())
+                .headers(headers -> headers.addAll(entity.getHeaders()));
+        if (entity.getBody() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).bodyValue(entity.getBody());
+    }
+
+    private static Mono<ServerResponse> page(Mono<MovieInfoPage> page) {
+        return page.flatMap(movieInfoPage -> ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(movieInfoPage));
+    }
+
+    private static Set<String> fields(ServerRequest request) {
+        return MovieInfoFields.parse(request.queryParam("fields").orElse(null));
+    }
+
+    private static String after(ServerRequest request) {
+        return request.queryParam("after").orElse(null);
+    }
+
+    private static Integer optionalIntParam(ServerRequest request, String name) {
+        return request.queryParam(name).isEmpty() ? null : intParam(request, name, null);
+    }
+
+    private static int intParam(ServerRequest request, String name, Integer defaultValue) {
+        var value = request.queryParam(name);
+        if (value.isEmpty()) {
+            if (defaultValue == null) {
+                throw new ServerWebInputException("Required query parameter '" + name + "' is not present");
+            }
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.get());
+        } catch (NumberFormatException ex) {
+            throw new ServerWebInputException("Invalid value '" + value.get() + "' for query parameter '" + name + "'");
+        }
+    }
+}
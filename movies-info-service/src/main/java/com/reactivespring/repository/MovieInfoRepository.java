@@ -1,7 +1,29 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String> {
+public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String>, MovieInfoRepositoryCustom {
+
+    // Keyset pagination on _id, both queries walk the _id index so page N costs the same as page 1
+    Flux<MovieInfo> findAllByOrderByMovieInfoIdAsc(Pageable pageable);
+
+    Flux<MovieInfo> findByMovieInfoIdGreaterThanOrderByMovieInfoIdAsc(String movieInfoId, Pageable pageable);
+
+    // Mongo only compares values of the same BSON type, so "_id > 'abc'" would skip generated ObjectIds.
+    // ObjectIds sort after strings, so after a plain string id they all belong to the following pages.
+    @Query(value = "{ $or: [ { '_id': { $gt: ?0 } }, { '_id': { $type: 'objectId' } } ] }", sort = "{ '_id': 1 }")
+    Flux<MovieInfo> findAfterStringId(String movieInfoId, Pageable pageable);
+
+    // Projection used for conditional GETs, only _id and version come back from Mongo
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'version': 1 }")
+    Mono<MovieInfo> findVersionById(String movieInfoId);
+
+    Mono<Long> deleteByMovieInfoId(String movieInfoId);
+
+    Mono<Long> deleteByMovieInfoIdAndVersion(String movieInfoId, Long version);
 }
@@ -0,0 +1,46 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoCount;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface MovieInfoRepositoryCustom {
+
+    // A non null fields is pushed down as a projection, only these properties (plus _id and version) are read
+    Flux<MovieInfo> streamAll(int batchSize, Collection<String> fields);
+
+    Mono<MovieInfo> findById(String movieInfoId, Collection<String> fields);
+
+    Flux<MovieInfo> findAllById(Collection<String> movieInfoIds, Collection<String> fields);
+
+    // One unordered insertMany, the result index is the position in movieInfos
+    Flux<MovieInfoBulkResult> insertAllUnordered(List<MovieInfo> movieInfos);
+
+    // Keyset pages, at most limit documents after (afterKey, afterId) in the index order of the filter.
+    // A null afterId starts at the first page.
+    Flux<MovieInfo> findAfterId(String afterId, int limit, Collection<String> fields);
+
+    Flux<MovieInfo> findByYear(Integer year, String afterId, int limit, Collection<String> fields);
+
+    Flux<MovieInfo> findByYearBetween(Integer fromYear, Integer toYear, Integer afterYear, String afterId, int limit, Collection<String> fields);
+
+    Flux<MovieInfo> findByNamePrefix(String namePrefix, String afterName, String afterId, int limit, Collection<String> fields);
+
+    // $group pipelines, one document per group whatever the size of the collection
+    Flux<MovieInfoCount<Integer>> countByYear();
+
+    Flux<MovieInfoCount<Integer>> countByDecade();
+
+    // Most frequent cast members first
+    Flux<MovieInfoCount<String>> countByCastMember();
+
+    // Atomic $set of the given properties, returns the updated document or empty when the id does not exist
+    // or, with a non null expectedVersion, when the stored version is different
+    Mono<MovieInfo> findAndSet(String movieInfoId, Long expectedVersion, Map<String, Object> fields);
+}
@@ -0,0 +1,236 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoCount;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<MovieInfo> streamAll(int batchSize, Collection<String> fields) {
+        // The driver fetches at most batchSize documents per getMore, whatever the downstream demand
+        return reactiveMongoTemplate.find(project(new Query().cursorBatchSize(batchSize), fields), MovieInfo.class);
+    }
+
+    @Override
+    public Mono<MovieInfo> findById(String movieInfoId, Collection<String> fields) {
+        var query = Query.query(Criteria.where("movieInfoId").is(movieInfoId));
+        return reactiveMongoTemplate.findOne(project(query, fields), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findAllById(Collection<String> movieInfoIds, Collection<String> fields) {
+        var query = Query.query(Criteria.where("movieInfoId").in(movieInfoIds));
+        return reactiveMongoTemplate.find(project(query, fields), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfoBulkResult> insertAllUnordered(List<MovieInfo> movieInfos) {
+        if (movieInfos.isEmpty()) {
+            return Flux.empty();
+        }
+        var documents = movieInfos.stream()
+                .map(this::toDocument)
+                .collect(Collectors.toList());
+
+        // Unordered so one duplicate key does not stop the rest of the batch
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(insertManyResult -> Map.<Integer, String>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))))
+                .flatMapMany(errors -> Flux.range(0, movieInfos.size())
+                        .map(index -> toResult(index, movieInfos.get(index), errors.get(index))))
+                .onErrorResume(ex -> Flux.range(0, movieInfos.size())
+                        .map(index -> toResult(index, movieInfos.get(index), ex.getMessage())));
+    }
+
+    @Override
+    public Flux<MovieInfo> findAfterId(String afterId, int limit, Collection<String> fields) {
+        var query = new Query();
+        if (afterId != null) {
+            query.addCriteria(idAfter(afterId));
+        }
+        query.with(Sort.by("movieInfoId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(project(query, fields), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByYear(Integer year, String afterId, int limit, Collection<String> fields) {
+        var criteria = Criteria.where("year").is(year);
+        if (afterId != null) {
+            criteria = criteria.andOperator(idAfter(afterId));
+        }
+        var query = Query.query(criteria)
+                .with(Sort.by("movieInfoId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(project(query, fields), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByYearBetween(Integer fromYear, Integer toYear, Integer afterYear, String afterId, int limit, Collection<String> fields) {
+        // A missing bound leaves that end of the year index range open
+        var criteria = Criteria.where("year");
+        if (fromYear != null) {
+            criteria = criteria.gte(fromYear);
+        }
+        if (toYear != null) {
+            criteria = criteria.lte(toYear);
+        }
+        if (afterId != null) {
+            criteria = criteria.andOperator(keyAfter("year", afterYear, afterId));
+        }
+        var query = Query.query(criteria)
+                .with(Sort.by("year", "movieInfoId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(project(query, fields), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByNamePrefix(String namePrefix, String afterName, String afterId, int limit, Collection<String> fields) {
+        // A plain anchored regex lets Mongo turn the prefix into index bounds on name
+        var criteria = Criteria.where("name").regex("^" + escapeRegex(namePrefix));
+        if (afterId != null) {
+            criteria = criteria.andOperator(keyAfter("name", afterName, afterId));
+        }
+        var query = Query.query(criteria)
+                .with(Sort.by("name", "movieInfoId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(project(query, fields), MovieInfo.class);
+    }
+
+    private static Query project(Query query, Collection<String> fields) {
+        if (fields != null) {
+            // _id is returned unless excluded
+            fields.forEach(query.fields()::include);
+            query.fields().include("version");
+        }
+        return query;
+    }
+
+    // (key, _id) > (afterKey, afterId)
+    private Criteria keyAfter(String key, Object afterKey, String afterId) {
+        return new Criteria().orOperator(
+                Criteria.where(key).gt(afterKey),
+                new Criteria().andOperator(Criteria.where(key).is(afterKey), idAfter(afterId)));
+    }
+
+    // Mongo only compares values of the same BSON type and generated ObjectIds sort after string ids,
+    // so after a string id every ObjectId is still ahead
+    private Criteria idAfter(String afterId) {
+        if (ObjectId.isValid(afterId)) {
+            return Criteria.where("movieInfoId").gt(new ObjectId(afterId));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("movieInfoId").gt(afterId),
+                // BSON type 7 is ObjectId
+                Criteria.where("movieInfoId").type(7));
+    }
+
+    private static String escapeRegex(String value) {
+        var escaped = new StringBuilder(value.length());
+        for (var c : value.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    @Override
+    public Flux<MovieInfoCount<Integer>> countByYear() {
+        return countBy(Integer.class,
+                Aggregation.match(Criteria.where("year").ne(null)),
+                Aggregation.group("year").count().as("count"),
+                Aggregation.sort(Sort.by("_id")));
+    }
+
+    @Override
+    public Flux<MovieInfoCount<Integer>> countByDecade() {
+        return countBy(Integer.class,
+                Aggregation.match(Criteria.where("year").ne(null)),
+                // year - year % 10
+                Aggregation.project().and(ArithmeticOperators.Subtract.valueOf("year")
+                        .subtract(ArithmeticOperators.Mod.valueOf("year").mod(10))).as("decade"),
+                Aggregation.group("decade").count().as("count"),
+                Aggregation.sort(Sort.by("_id")));
+    }
+
+    @Override
+    public Flux<MovieInfoCount<String>> countByCastMember() {
+        return countBy(String.class,
+                Aggregation.unwind("cast"),
+                Aggregation.group("cast").count().as("count"),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "count").and(Sort.by("_id"))));
+    }
+
+    private <K> Flux<MovieInfoCount<K>> countBy(Class<K> keyType, AggregationOperation... operations) {
+        // allowDiskUse so a $group over a large collection does not fail on the 100MB stage memory limit
+        var aggregation = Aggregation.newAggregation(operations)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return reactiveMongoTemplate.aggregate(aggregation, MovieInfo.class, Document.class)
+                .map(group -> new MovieInfoCount<>(group.get("_id", keyType), group.get("count", Number.class).longValue()));
+    }
+
+    @Override
+    public Mono<MovieInfo> findAndSet(String movieInfoId, Long expectedVersion, Map<String, Object> fields) {
+        var criteria = Criteria.where("movieInfoId").is(movieInfoId);
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+        var update = new Update();
+        fields.forEach(update::set);
+        // The template adds the $inc on the @Version property
+        return reactiveMongoTemplate.findAndModify(Query.query(criteria),
+                update, FindAndModifyOptions.options().returnNew(true), MovieInfo.class);
+    }
+
+    private Document toDocument(MovieInfo movieInfo) {
+        // insertMany bypasses the template, so set the initial version it would have set
+        movieInfo.setVersion(0L);
+        var document = new Document();
+        reactiveMongoTemplate.getConverter().write(movieInfo, document);
+        // Assign the id up front so every item can be reported even when the batch fails
+        if (document.get("_id") == null) {
+            var id = new ObjectId();
+            document.put("_id", id);
+            movieInfo.setMovieInfoId(id.toHexString());
+        }
+        return document;
+    }
+
+    private MovieInfoBulkResult toResult(int index, MovieInfo movieInfo, String error) {
+        var status = error == null ? MovieInfoBulkResult.Status.CREATED : MovieInfoBulkResult.Status.FAILED;
+        return new MovieInfoBulkResult(index, movieInfo.getMovieInfoId(), status, error);
+    }
+}
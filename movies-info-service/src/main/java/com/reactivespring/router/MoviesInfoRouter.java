@@ -0,0 +1,73 @@
+package com.reactivespring.router;
+
+import com.reactivespring.handler.MoviesInfoHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.List;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+// movieinfo.web.stack=functional replaces MoviesInfoController with these routes.
+// Routes are tried in order, so the fixed paths and the query parameter listings come before /{id} and the plain listing.
+@Configuration
+@ConditionalOnProperty(name = "movieinfo.web.stack", havingValue = "functional")
+public class MoviesInfoRouter {
+
+    private static final String MOVIE_INFOS = "/v1/movieinfos";
+
+    private static final List<String> FILTERS = List.of("year", "fromYear", "toYear", "namePrefix");
+
+    @Bean
+    public RouterFunction<ServerResponse> moviesInfoRoute(MoviesInfoHandler moviesInfoHandler) {
+        return route()
+                .POST(MOVIE_INFOS + "/bulk", contentType(MediaType.APPLICATION_NDJSON), moviesInfoHandler::addMovieInfos)
+                .POST(MOVIE_INFOS + "/batch-get", moviesInfoHandler::getMoviesInfoByIds)
+                .GET(MOVIE_INFOS + "/stream", acceptsExplicitly(MediaType.APPLICATION_NDJSON), moviesInfoHandler::streamMovieInfoEventsAsNdjson)
+                .GET(MOVIE_INFOS + "/stream", moviesInfoHandler::streamMovieInfoEvents)
+                .GET(MOVIE_INFOS + "/search", moviesInfoHandler::searchMoviesInfo)
+                .GET(MOVIE_INFOS, onlyFilter("year"), moviesInfoHandler::getMoviesInfoByYear)
+                .GET(MOVIE_INFOS, onlyFilter("fromYear", "toYear"), moviesInfoHandler::getMoviesInfoByYearRange)
+                .GET(MOVIE_INFOS, onlyFilter("namePrefix"), moviesInfoHandler::getMoviesInfoByNamePrefix)
+                .GET(MOVIE_INFOS, anyFilter(), moviesInfoHandler::rejectFilterCombination)
+                .GET(MOVIE_INFOS, hasParam("limit"), moviesInfoHandler::getMoviesInfoPage)
+                .GET(MOVIE_INFOS, acceptsExplicitly(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM),
+                        moviesInfoHandler::streamAllMovies)
+                .GET(MOVIE_INFOS, moviesInfoHandler::getAllMovies)
+                .POST(MOVIE_INFOS, moviesInfoHandler::addMovieInfo)
+                .GET(MOVIE_INFOS + "/{id}", moviesInfoHandler::getMovieInfoById)
+                .PUT(MOVIE_INFOS + "/{id}", moviesInfoHandler::updateMovieInfo)
+                .PATCH(MOVIE_INFOS + "/{id}", moviesInfoHandler::patchMovieInfo)
+                .DELETE(MOVIE_INFOS + "/{id}", moviesInfoHandler::deleteMovieInfo)
+                .build();
+    }
+
+    private static RequestPredicate hasParam(String name) {
+        return queryParam(name, value -> true);
+    }
+
+    // At least one of the given filter parameters and none of the other ones, like the negations of MoviesInfoController
+    private static RequestPredicate onlyFilter(String... names) {
+        var filter = List.of(names);
+        return request -> filter.stream().anyMatch(name -> request.queryParam(name).isPresent())
+                && FILTERS.stream().filter(name -> !filter.contains(name)).noneMatch(name -> request.queryParam(name).isPresent());
+    }
+
+    private static RequestPredicate anyFilter() {
+        return request -> FILTERS.stream().anyMatch(name -> request.queryParam(name).isPresent());
+    }
+
+    // A wildcard Accept, or none at all, gets the JSON array like the annotated stack does
+    private static RequestPredicate acceptsExplicitly(MediaType... mediaTypes) {
+        var streamingTypes = List.of(mediaTypes);
+        return request -> request.headers().accept().stream()
+                .anyMatch(accepted -> accepted.isConcrete() && streamingTypes.stream().anyMatch(accepted::isCompatibleWith));
+    }
+}
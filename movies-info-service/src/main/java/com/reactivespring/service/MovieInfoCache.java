@@ -0,0 +1,87 @@
+package com.reactivespring.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A put is fenced by the ticket its caller took before reading or writing Mongo. invalidate leaves a tombstone
+// for the id, so a read that started before a delete and completes after it cannot put the deleted movie info back.
+@Component
+public class MovieInfoCache {
+
+    private final Cache<String, MovieInfo> cache;
+
+    // id -> invalidation that removed it, kept longer than any read of Mongo takes
+    private final Cache<String, Long> tombstones;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Highest invalidation whose tombstone was evicted for size, the id it fenced is no longer known
+    private final AtomicLong evictedTombstones = new AtomicLong();
+
+    public MovieInfoCache(@Value("${movieinfo.cache.max-size:10000}") long maxSize,
+                          @Value("${movieinfo.cache.ttl:5m}") Duration ttl,
+                          @Value("${movieinfo.cache.tombstone-ttl:1m}") Duration tombstoneTtl,
+                          MeterRegistry meterRegistry) {
+        // Caffeine evicts with W-TinyLFU, so a burst of one-off lookups does not push out the popular titles
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Size bounded like the cache, admission may even refuse a new tombstone, so an eviction for size
+        // is recorded before the entry is gone: the eviction listener runs while it is being removed
+        this.tombstones = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(tombstoneTtl)
+                .<String, Long>evictionListener((movieInfoId, invalidation, cause) -> {
+                    if (cause == RemovalCause.SIZE && invalidation != null) {
+                        evictedTombstones.accumulateAndGet(invalidation, Math::max);
+                    }
+                })
+                .build();
+        // cache.gets{result=hit|miss}, cache.evictions and cache.size tagged with cache=movieinfo
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "movieinfo");
+    }
+
+    public MovieInfo get(String movieInfoId) {
+        return cache.getIfPresent(movieInfoId);
+    }
+
+    // Taken before the read or write whose result is put
+    public long ticket() {
+        return invalidations.get();
+    }
+
+    public void put(MovieInfo movieInfo, long ticket) {
+        // compute, like invalidate, so the tombstone check and the write cannot interleave with an invalidation
+        cache.asMap().compute(movieInfo.getMovieInfoId(), (movieInfoId, cached) -> {
+            var tombstone = tombstones.getIfPresent(movieInfoId);
+            // A ticket older than an evicted tombstone may be the read that tombstone fenced, it is not cached
+            if ((tombstone != null && tombstone > ticket) || evictedTombstones.get() > ticket) {
+                return cached;
+            }
+            // Keep the newest version when a slow read or an earlier update completes after a later update
+            return cached == null || version(movieInfo) >= version(cached) ? movieInfo : cached;
+        });
+    }
+
+    public void invalidate(String movieInfoId) {
+        cache.asMap().compute(movieInfoId, (id, cached) -> {
+            tombstones.put(id, invalidations.incrementAndGet());
+            return null;
+        });
+    }
+
+    private static long version(MovieInfo movieInfo) {
+        return movieInfo.getVersion() == null ? -1 : movieInfo.getVersion();
+    }
+}
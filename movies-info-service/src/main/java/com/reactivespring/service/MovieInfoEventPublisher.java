@@ -0,0 +1,89 @@
+package com.reactivespring.service;
+
+import com.reactivespring.operator.EventFanout;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.MovieInfoStreamLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The movie info change feed. A replaying fan-out, so a client that reconnects gets the last replay-size
+// changes before the live ones, capped at max-subscribers since every subscriber holds a replay cursor
+// and a buffer. Buffering and the overflow policy are EventFanout's.
+@Component
+@Slf4j
+public class MovieInfoEventPublisher {
+
+    private final EventFanout<MovieInfoEvent> fanout;
+
+    private final Duration heartbeatInterval;
+    private final int maxSubscribers;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public MovieInfoEventPublisher(@Value("${movieinfo.events.replay-size:100}") int replaySize,
+                                   @Value("${movieinfo.events.buffer-size:256}") int bufferSize,
+                                   @Value("${movieinfo.events.overflow:drop}") String overflow,
+                                   @Value("${movieinfo.events.heartbeat-interval:15s}") Duration heartbeatInterval,
+                                   @Value("${movieinfo.events.max-subscribers:1000}") int maxSubscribers,
+                                   MeterRegistry meterRegistry) {
+        Counter droppedEvents = meterRegistry.counter("movieinfo.events.dropped");
+        this.fanout = new EventFanout<>(Sinks.many().replay().limit(replaySize), bufferSize,
+                EventFanout.Overflow.of(overflow), dropped -> droppedEvents.increment());
+        this.heartbeatInterval = heartbeatInterval;
+        this.maxSubscribers = maxSubscribers;
+        meterRegistry.gauge("movieinfo.events.subscribers", subscribers);
+    }
+
+    public void created(MovieInfo movieInfo) {
+        publish(MovieInfoEvent.Type.CREATED, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public void updated(MovieInfo movieInfo) {
+        publish(MovieInfoEvent.Type.UPDATED, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public void deleted(String movieInfoId) {
+        publish(MovieInfoEvent.Type.DELETED, movieInfoId, null);
+    }
+
+    private void publish(MovieInfoEvent.Type type, String movieInfoId, MovieInfo movieInfo) {
+        var result = fanout.publish(sequence -> new MovieInfoEvent(sequence, type, movieInfoId, movieInfo, Instant.now()));
+        // A replay sink keeps the event even without subscribers, any failure is worth a warning
+        if (result.isFailure()) {
+            log.warn("Movie info event {} of {} not published: {}", type, movieInfoId, result);
+        }
+    }
+
+    // The last replay-size events followed by live ones
+    public Flux<MovieInfoEvent> events() {
+        return Flux.defer(() -> {
+            if (subscribers.incrementAndGet() > maxSubscribers) {
+                subscribers.decrementAndGet();
+                return Flux.error(new MovieInfoStreamLimitException("too many movie info event subscribers"));
+            }
+            return fanout.events()
+                    .doFinally(signalType -> subscribers.decrementAndGet());
+        });
+    }
+
+    public Flux<ServerSentEvent<MovieInfoEvent>> serverSentEvents() {
+        var events = events()
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(String.valueOf(event.getSequence()))
+                        .event(event.getType().name())
+                        .build());
+        return EventFanout.withHeartbeats(events, heartbeatInterval,
+                () -> ServerSentEvent.<MovieInfoEvent>builder().comment("heartbeat").build());
+    }
+}
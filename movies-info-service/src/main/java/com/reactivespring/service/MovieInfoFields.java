@@ -0,0 +1,72 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.ProjectedMovieInfo;
+import com.reactivespring.exception.MovieInfoDataException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+// The fields request parameter of the GET endpoints, e.g. fields=name,year.
+// movieInfoId and version are always returned, the ETag and the page cursors are built from them.
+public final class MovieInfoFields {
+
+    static final Set<String> PROPERTIES = Set.of("movieInfoId", "name", "year", "cast", "releaseDate", "version");
+
+    private MovieInfoFields() {
+    }
+
+    // null, the default, when the parameter is absent or blank
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        var parsed = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toSet());
+        var unknown = new TreeSet<>(parsed);
+        unknown.removeAll(PROPERTIES);
+        if (!unknown.isEmpty()) {
+            throw new MovieInfoDataException("unknown fields " + String.join(",", unknown));
+        }
+        return parsed.isEmpty() ? null : parsed;
+    }
+
+    static Set<String> with(Set<String> fields, String property) {
+        if (fields == null || fields.contains(property)) {
+            return fields;
+        }
+        var extended = new HashSet<>(fields);
+        extended.add(property);
+        return extended;
+    }
+
+    // A copy holding only the given properties, written without the null ones
+    static MovieInfo retain(MovieInfo movieInfo, Set<String> fields) {
+        if (fields == null) {
+            return movieInfo;
+        }
+        return new ProjectedMovieInfo(movieInfo.getMovieInfoId(),
+                fields.contains("name") ? movieInfo.getName() : null,
+                fields.contains("year") ? movieInfo.getYear() : null,
+                fields.contains("cast") ? movieInfo.getCast() : null,
+                fields.contains("releaseDate") ? movieInfo.getReleaseDate() : null,
+                movieInfo.getVersion());
+    }
+
+    static MovieInfoPage retain(MovieInfoPage page, Set<String> fields) {
+        if (fields == null) {
+            return page;
+        }
+        List<MovieInfo> movieInfos = page.getMovieInfos().stream()
+                .map(movieInfo -> retain(movieInfo, fields))
+                .collect(Collectors.toList());
+        return new MovieInfoPage(movieInfos, page.getNextCursor());
+    }
+}
@@ -0,0 +1,307 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over MovieInfo.name and MovieInfo.cast.
+// Every indexed movie info gets an int ordinal, posting lists are parallel int arrays of ordinals and term weights
+// in ordinal order. Updates index the new document under a new ordinal and mark the old one deleted,
+// deleted ordinals are dropped when they outnumber the live ones.
+@Component
+@Slf4j
+public class MovieInfoSearchIndex {
+
+    private static final int NAME_WEIGHT = 2;
+    private static final int CAST_WEIGHT = 1;
+
+    private final MovieInfoRepository movieInfoRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> movieInfoIds = new ArrayList<>();
+    private final List<Long> versions = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    // Ids removed while a (re)load is running, so the load does not bring them back
+    private Set<String> removedDuringLoad;
+
+    public MovieInfoSearchIndex(MovieInfoRepository movieInfoRepository) {
+        this.movieInfoRepository = movieInfoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild().subscribe(
+                count -> log.info("Indexed {} movie infos for search", count),
+                ex -> log.error("Loading the search index failed", ex));
+    }
+
+    public Mono<Long> rebuild() {
+        return Mono.defer(() -> {
+            withWriteLock(() -> {
+                clear();
+                removedDuringLoad = new HashSet<>();
+            });
+            return movieInfoRepository.findAll()
+                    .doOnNext(movieInfo -> withWriteLock(() -> {
+                        if (!removedDuringLoad.contains(movieInfo.getMovieInfoId())) {
+                            add(movieInfo);
+                        }
+                    }))
+                    .count()
+                    .doFinally(signalType -> withWriteLock(() -> removedDuringLoad = null));
+        });
+    }
+
+    public void index(MovieInfo movieInfo) {
+        withWriteLock(() -> add(movieInfo));
+    }
+
+    public void remove(String movieInfoId) {
+        withWriteLock(() -> {
+            if (removedDuringLoad != null) {
+                removedDuringLoad.add(movieInfoId);
+            }
+            var ordinal = ordinals.remove(movieInfoId);
+            if (ordinal != null) {
+                markDeleted(ordinal);
+            }
+        });
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // movieInfoIds ranked by sum of weight * idf over the query terms,
+    // movie infos matching more of the terms always rank first
+    public List<String> search(String query, int page, int size) {
+        var terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || size <= 0 || page < 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            var liveCount = ordinals.size();
+            var scores = new HashMap<Integer, float[]>();
+            for (var term : terms) {
+                var postingList = postings.get(term);
+                if (postingList == null) {
+                    continue;
+                }
+                var idf = (float) Math.log(1 + (double) liveCount / postingList.size);
+                for (var i = 0; i < postingList.size; i++) {
+                    var ordinal = postingList.ordinals[i];
+                    if (deleted.get(ordinal)) {
+                        continue;
+                    }
+                    var score = scores.computeIfAbsent(ordinal, o -> new float[2]);
+                    score[0]++;
+                    score[1] += postingList.weights[i] * idf;
+                }
+            }
+            return topK(scores, page, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<String> topK(Map<Integer, float[]> scores, int page, int size) {
+        var k = (long) (page + 1) * size;
+        if (k > Integer.MAX_VALUE || scores.size() <= (long) page * size) {
+            return List.of();
+        }
+        // Min-heap of the best k, the root is the worst of them
+        PriorityQueue<Map.Entry<Integer, float[]>> best = new PriorityQueue<>((a, b) -> compare(b, a));
+        for (var entry : scores.entrySet()) {
+            best.offer(entry);
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        var ranked = new ArrayList<String>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(movieInfoIds.get(best.poll().getKey()));
+        }
+        var from = page * size;
+        var to = ranked.size();
+        var result = new ArrayList<String>(Math.max(0, to - from));
+        for (var i = to - 1 - from; i >= 0 && result.size() < size; i--) {
+            result.add(ranked.get(i));
+        }
+        return result;
+    }
+
+    // Better first: more matched terms, then higher score, then indexed earlier
+    private static int compare(Map.Entry<Integer, float[]> a, Map.Entry<Integer, float[]> b) {
+        var byTerms = Float.compare(b.getValue()[0], a.getValue()[0]);
+        if (byTerms != 0) {
+            return byTerms;
+        }
+        var byScore = Float.compare(b.getValue()[1], a.getValue()[1]);
+        return byScore != 0 ? byScore : Integer.compare(a.getKey(), b.getKey());
+    }
+
+    private void add(MovieInfo movieInfo) {
+        var movieInfoId = movieInfo.getMovieInfoId();
+        var existing = ordinals.get(movieInfoId);
+        if (existing != null) {
+            var existingVersion = versions.get(existing);
+            if (existingVersion != null && movieInfo.getVersion() != null && existingVersion > movieInfo.getVersion()) {
+                return;
+            }
+            markDeleted(existing);
+        }
+
+        var ordinal = movieInfoIds.size();
+        movieInfoIds.add(movieInfoId);
+        versions.add(movieInfo.getVersion());
+        ordinals.put(movieInfoId, ordinal);
+
+        var weights = new HashMap<String, Integer>();
+        tokenize(movieInfo.getName()).forEach(term -> weights.merge(term, NAME_WEIGHT, Integer::sum));
+        if (movieInfo.getCast() != null) {
+            movieInfo.getCast().forEach(member ->
+                    tokenize(member).forEach(term -> weights.merge(term, CAST_WEIGHT, Integer::sum)));
+        }
+        weights.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new PostingList()).add(ordinal, weight));
+
+        if (deletedCount > 1024 && deletedCount > ordinals.size()) {
+            compact();
+        }
+    }
+
+    private void markDeleted(int ordinal) {
+        if (!deleted.get(ordinal)) {
+            deleted.set(ordinal);
+            deletedCount++;
+        }
+    }
+
+    // Renumbers the live ordinals and rewrites the posting lists without the deleted ones
+    private void compact() {
+        var remap = new int[movieInfoIds.size()];
+        var liveIds = new ArrayList<String>(ordinals.size());
+        var liveVersions = new ArrayList<Long>(ordinals.size());
+        for (var ordinal = 0; ordinal < movieInfoIds.size(); ordinal++) {
+            if (deleted.get(ordinal)) {
+                remap[ordinal] = -1;
+            } else {
+                remap[ordinal] = liveIds.size();
+                ordinals.put(movieInfoIds.get(ordinal), liveIds.size());
+                liveIds.add(movieInfoIds.get(ordinal));
+                liveVersions.add(versions.get(ordinal));
+            }
+        }
+        var iterator = postings.values().iterator();
+        while (iterator.hasNext()) {
+            var postingList = iterator.next();
+            postingList.remap(remap);
+            if (postingList.size == 0) {
+                iterator.remove();
+            }
+        }
+        movieInfoIds.clear();
+        movieInfoIds.addAll(liveIds);
+        versions.clear();
+        versions.addAll(liveVersions);
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void clear() {
+        postings.clear();
+        ordinals.clear();
+        movieInfoIds.clear();
+        versions.clear();
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void withWriteLock(Runnable runnable) {
+        lock.writeLock().lock();
+        try {
+            runnable.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        var terms = new ArrayList<String>();
+        var start = -1;
+        for (var i = 0; i <= text.length(); i++) {
+            var letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static class PostingList {
+        private int[] ordinals = new int[4];
+        private int[] weights = new int[4];
+        private int size;
+
+        // Ordinals are handed out in increasing order, so appending keeps the list sorted
+        private void add(int ordinal, int weight) {
+            if (size == ordinals.length) {
+                var capacity = size + (size >> 1);
+                ordinals = Arrays.copyOf(ordinals, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            ordinals[size] = ordinal;
+            weights[size] = weight;
+            size++;
+        }
+
+        private void remap(int[] remap) {
+            var live = 0;
+            for (var i = 0; i < size; i++) {
+                var ordinal = remap[ordinals[i]];
+                if (ordinal >= 0) {
+                    ordinals[live] = ordinal;
+                    weights[live] = weights[i];
+                    live++;
+                }
+            }
+            size = live;
+            if (ordinals.length > 2 * Math.max(size, 4)) {
+                ordinals = Arrays.copyOf(ordinals, Math.max(size, 4));
+                weights = Arrays.copyOf(weights, Math.max(size, 4));
+            }
+        }
+    }
+}
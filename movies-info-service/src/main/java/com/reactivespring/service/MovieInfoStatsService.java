@@ -0,0 +1,61 @@
+package com.reactivespring.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.domain.MovieInfoCount;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Counts of movie infos per year, decade and cast member, computed by Mongo.
+// A result is kept for ttl and dropped on every write through MoviesInfoService.
+@Service
+public class MovieInfoStatsService {
+
+    private final MovieInfoRepository movieInfoRepository;
+
+    // The cached Flux replays the groups to later subscribers and is shared by concurrent first ones,
+    // so one aggregation runs per report and ttl however many requests ask for it
+    private final Cache<String, Flux<? extends MovieInfoCount<?>>> results;
+
+    public MovieInfoStatsService(MovieInfoRepository movieInfoRepository,
+                                 @Value("${movieinfo.stats.ttl:30s}") Duration ttl) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.results = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Flux<MovieInfoCount<Integer>> countByYear() {
+        return cached("year", movieInfoRepository::countByYear);
+    }
+
+    public Flux<MovieInfoCount<Integer>> countByDecade() {
+        return cached("decade", movieInfoRepository::countByDecade);
+    }
+
+    public Flux<MovieInfoCount<String>> countByCastMember() {
+        return cached("cast", movieInfoRepository::countByCastMember);
+    }
+
+    public void invalidate() {
+        results.invalidateAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K> Flux<MovieInfoCount<K>> cached(String report, Supplier<Flux<MovieInfoCount<K>>> aggregation) {
+        return Flux.defer(() -> (Flux<MovieInfoCount<K>>) results.get(report, key -> {
+            var result = new AtomicReference<Flux<MovieInfoCount<K>>>();
+            // A failed aggregation is not kept
+            result.set(aggregation.get()
+                    .doOnError(ex -> results.asMap().remove(key, result.get()))
+                    .cache());
+            return result.get();
+        }));
+    }
+}
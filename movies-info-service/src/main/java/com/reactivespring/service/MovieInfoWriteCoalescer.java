@@ -0,0 +1,104 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Collects the inserts of concurrent addMovieInfo calls for up to window or max-batch-size
+// and writes them with one unordered insertMany, each caller still gets its own result or error.
+// Off unless movieinfo.write-coalescing.enabled is set, then addMovieInfo goes through insert.
+@Component
+@Slf4j
+public class MovieInfoWriteCoalescer {
+
+    private final MovieInfoRepository movieInfoRepository;
+
+    private final boolean enabled;
+
+    private FluxSink<PendingInsert> pendingInserts;
+
+    public MovieInfoWriteCoalescer(MovieInfoRepository movieInfoRepository,
+                                   @Value("${movieinfo.write-coalescing.enabled:false}") boolean enabled,
+                                   @Value("${movieinfo.write-coalescing.max-batch-size:100}") int maxBatchSize,
+                                   @Value("${movieinfo.write-coalescing.window:5ms}") Duration window,
+                                   @Value("${movieinfo.write-coalescing.concurrency:4}") int concurrency,
+                                   MeterRegistry meterRegistry) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.enabled = enabled;
+        if (enabled) {
+            var batchSizes = DistributionSummary.builder("movieinfo.write-coalescing.batch-size")
+                    .register(meterRegistry);
+            // FluxSink.next may be called from any thread, the calls are serialized for us.
+            // onBackpressureBuffer lets bufferTimeout emit on the window even while every flush slot is busy.
+            Flux.<PendingInsert>create(sink -> this.pendingInserts = sink)
+                    .bufferTimeout(maxBatchSize, window)
+                    .onBackpressureBuffer()
+                    .doOnNext(batch -> batchSizes.record(batch.size()))
+                    .flatMap(this::flush, concurrency)
+                    .subscribe(null, ex -> log.error("Movie info write coalescing stopped", ex));
+        }
+    }
+
+    public Mono<MovieInfo> insert(MovieInfo movieInfo) {
+        if (!enabled) {
+            return movieInfoRepository.save(movieInfo);
+        }
+        return Mono.create(sink -> pendingInserts.next(new PendingInsert(movieInfo, sink)));
+    }
+
+    private Mono<Void> flush(List<PendingInsert> batch) {
+        var movieInfos = batch.stream()
+                .map(pendingInsert -> pendingInsert.movieInfo)
+                .collect(Collectors.toList());
+        return movieInfoRepository.insertAllUnordered(movieInfos)
+                .doOnNext(result -> complete(batch.get((int) result.getIndex()), result))
+                .then()
+                // Should not happen, insertAllUnordered reports failures per document
+                .onErrorResume(ex -> {
+                    batch.forEach(pendingInsert -> pendingInsert.sink.error(ex));
+                    return Mono.empty();
+                });
+    }
+
+    private static void complete(PendingInsert pendingInsert, MovieInfoBulkResult result) {
+        if (result.getStatus() == MovieInfoBulkResult.Status.CREATED) {
+            pendingInsert.sink.success(pendingInsert.movieInfo);
+        } else if (result.getError() != null && result.getError().startsWith("E11000")) {
+            // Same exception as a single save of an existing id, answered with a 409
+            pendingInsert.sink.error(new DuplicateKeyException(result.getError()));
+        } else {
+            pendingInsert.sink.error(new UncategorizedMongoDbException(result.getError(), null));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Completing flushes the inserts still waiting for their window
+        if (pendingInserts != null) {
+            pendingInserts.complete();
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingInsert {
+        private final MovieInfo movieInfo;
+        private final MonoSink<MovieInfo> sink;
+    }
+}
@@ -1,44 +1,463 @@
 package com.reactivespring.service;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.exception.MovieInfoDataException;
 import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class MoviesInfoService {
 
+    static final int MAX_PAGE_LIMIT = 500;
+
     MovieInfoRepository movieInfoRepository;
 
-    public MoviesInfoService(MovieInfoRepository movieInfoRepository) {
+    private final MovieInfoCache movieInfoCache;
+
+    private final MovieInfoSearchIndex movieInfoSearchIndex;
+
+    private final MovieInfoEventPublisher movieInfoEventPublisher;
+
+    private final MovieInfoWriteCoalescer movieInfoWriteCoalescer;
+
+    private final MovieInfoStatsService movieInfoStatsService;
+
+    private final SingleFlight<String, MovieInfo> movieInfoByIdFlights;
+
+    private final Validator validator;
+
+    private final int streamBatchSize;
+    private final int streamRateLimit;
+
+    private final int bulkBatchSize;
+    private final Duration bulkFlushInterval;
+    private final int bulkConcurrency;
+
+    public MoviesInfoService(MovieInfoRepository movieInfoRepository,
+                             MovieInfoCache movieInfoCache,
+                             MovieInfoSearchIndex movieInfoSearchIndex,
+                             MovieInfoEventPublisher movieInfoEventPublisher,
+                             MovieInfoWriteCoalescer movieInfoWriteCoalescer,
+                             MovieInfoStatsService movieInfoStatsService,
+                             Validator validator,
+                             MeterRegistry meterRegistry,
+                             @Value("${movieinfo.stream.batch-size:100}") int streamBatchSize,
+                             @Value("${movieinfo.stream.rate-limit:100}") int streamRateLimit,
+                             @Value("${movieinfo.bulk.batch-size:500}") int bulkBatchSize,
+                             @Value("${movieinfo.bulk.flush-interval:100ms}") Duration bulkFlushInterval,
+                             @Value("${movieinfo.bulk.concurrency:2}") int bulkConcurrency) {
         this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoCache = movieInfoCache;
+        this.movieInfoSearchIndex = movieInfoSearchIndex;
+        this.movieInfoEventPublisher = movieInfoEventPublisher;
+        this.movieInfoWriteCoalescer = movieInfoWriteCoalescer;
+        this.movieInfoStatsService = movieInfoStatsService;
+        this.movieInfoByIdFlights = new SingleFlight<>("getMovieInfoById", meterRegistry);
+        this.validator = validator;
+        this.streamBatchSize = streamBatchSize;
+        this.streamRateLimit = streamRateLimit;
+        this.bulkBatchSize = bulkBatchSize;
+        this.bulkFlushInterval = bulkFlushInterval;
+        this.bulkConcurrency = bulkConcurrency;
     }
 
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo);
+        // A null version makes Spring Data insert the document with version 0
+        movieInfo.setVersion(null);
+        // A plain save unless write coalescing is enabled
+        return movieInfoWriteCoalescer.insert(movieInfo)
+                .doOnNext(this::created);
+    }
+
+    public Flux<MovieInfoBulkResult> addMovieInfos(Flux<MovieInfo> movieInfos) {
+        // bufferTimeout flushes a partial batch when the client sends slowly,
+        // flatMapSequential keeps a few insertMany calls in flight while preserving result order
+        return movieInfos.index()
+                .bufferTimeout(bulkBatchSize, bulkFlushInterval)
+                .flatMapSequential(this::insertBatch, bulkConcurrency);
+    }
+
+    private Flux<MovieInfoBulkResult> insertBatch(List<Tuple2<Long, MovieInfo>> batch) {
+        var results = new ArrayList<MovieInfoBulkResult>();
+        var validIndexes = new ArrayList<Long>();
+        var validMovieInfos = new ArrayList<MovieInfo>();
+        batch.forEach(indexed -> {
+            var violations = validator.validate(indexed.getT2());
+            if (violations.isEmpty()) {
+                validIndexes.add(indexed.getT1());
+                validMovieInfos.add(indexed.getT2());
+            } else {
+                results.add(new MovieInfoBulkResult(indexed.getT1(), indexed.getT2().getMovieInfoId(),
+                        MovieInfoBulkResult.Status.INVALID, errorMessage(violations)));
+            }
+        });
+        return movieInfoRepository.insertAllUnordered(validMovieInfos)
+                .doOnNext(result -> {
+                    if (result.getStatus() == MovieInfoBulkResult.Status.CREATED) {
+                        created(validMovieInfos.get((int) result.getIndex()));
+                    }
+                    result.setIndex(validIndexes.get((int) result.getIndex()));
+                })
+                .concatWith(Flux.fromIterable(results))
+                .sort(Comparator.comparingLong(MovieInfoBulkResult::getIndex));
+    }
+
+    private String errorMessage(Set<ConstraintViolation<MovieInfo>> violations) {
+        // Same format as the GlobalErrorHandler response for a single POST
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(","));
     }
 
-    public Flux<MovieInfo> getAllMoviesInfo() {
+    // fields, when not null, are the properties to read, see MovieInfoFields.
+    // Projected documents go through MovieInfoFields.retain so only they are written without the null properties.
+    public Flux<MovieInfo> getAllMoviesInfo(Set<String> fields) {
+        if (fields != null) {
+            return movieInfoRepository.streamAll(streamBatchSize, fields)
+                    .map(movieInfo -> MovieInfoFields.retain(movieInfo, fields));
+        }
         return movieInfoRepository.findAll();
     }
 
+    public Flux<MovieInfo> streamAllMoviesInfo(Set<String> fields) {
+        // limitRate keeps the demand sent to the Mongo cursor bounded by what the client is actually reading
+        return movieInfoRepository.streamAll(streamBatchSize, fields)
+                .limitRate(streamRateLimit)
+                .map(movieInfo -> MovieInfoFields.retain(movieInfo, fields));
+    }
+
+    public Mono<MovieInfoPage> getMoviesInfoPage(String after, int limit, Set<String> fields) {
+        var pageLimit = pageLimit(limit);
+        // Fetch one extra document to know whether there is a next page without a count query
+        var pageable = PageRequest.of(0, pageLimit + 1);
+        Flux<MovieInfo> movieInfos;
+        if (fields != null) {
+            movieInfos = movieInfoRepository.findAfterId(after, pageLimit + 1, fields)
+                    .map(movieInfo -> MovieInfoFields.retain(movieInfo, fields));
+        } else if (after == null) {
+            movieInfos = movieInfoRepository.findAllByOrderByMovieInfoIdAsc(pageable);
+        } else if (ObjectId.isValid(after)) {
+            movieInfos = movieInfoRepository.findByMovieInfoIdGreaterThanOrderByMovieInfoIdAsc(after, pageable);
+        } else {
+            movieInfos = movieInfoRepository.findAfterStringId(after, pageable);
+        }
+        return toPage(movieInfos, pageLimit, MovieInfo::getMovieInfoId);
+    }
+
+    public Mono<MovieInfoPage> getMoviesInfoByYear(Integer year, String after, int limit, Set<String> fields) {
+        var pageLimit = pageLimit(limit);
+        return toPage(movieInfoRepository.findByYear(year, after, pageLimit + 1, fields),
+                pageLimit, MovieInfo::getMovieInfoId)
+                .map(page -> MovieInfoFields.retain(page, fields));
+    }
+
+    // The sort key is read for the cursor even when not requested, and left out of the page afterwards
+    public Mono<MovieInfoPage> getMoviesInfoByYearRange(Integer fromYear, Integer toYear, String after, int limit, Set<String> fields) {
+        var pageLimit = pageLimit(limit);
+        return Mono.fromCallable(() -> decodeCursor(after))
+                .flatMap(cursor -> toPage(movieInfoRepository.findByYearBetween(fromYear, toYear, cursorYear(cursor[0]), cursor[1], pageLimit + 1,
+                                MovieInfoFields.with(fields, "year")),
+                        pageLimit, movieInfo -> encodeCursor(String.valueOf(movieInfo.getYear()), movieInfo.getMovieInfoId())))
+                .map(page -> MovieInfoFields.retain(page, fields));
+    }
+
+    // year, fromYear/toYear and namePrefix each page through their own index, a listing takes one of them
+    public static Mono<MovieInfoPage> rejectFilterCombination() {
+        return Mono.error(new MovieInfoDataException("pass only one of year, fromYear/toYear and namePrefix"));
+    }
+
+    public Mono<MovieInfoPage> getMoviesInfoByNamePrefix(String namePrefix, String after, int limit, Set<String> fields) {
+        var pageLimit = pageLimit(limit);
+        return Mono.fromCallable(() -> decodeCursor(after))
+                .flatMap(cursor -> toPage(movieInfoRepository.findByNamePrefix(namePrefix, cursor[0], cursor[1], pageLimit + 1,
+                                MovieInfoFields.with(fields, "name")),
+                        pageLimit, movieInfo -> encodeCursor(movieInfo.getName(), movieInfo.getMovieInfoId())))
+                .map(page -> MovieInfoFields.retain(page, fields));
+    }
+
+    public Flux<MovieInfo> searchMoviesInfo(String query, int page, int size, Set<String> fields) {
+        // Ranking happens in memory, Mongo is only asked for the documents of the requested page
+        return Mono.fromCallable(() -> movieInfoSearchIndex.search(query, Math.max(page, 0), pageLimit(size)))
+                .flatMapMany(ids -> (fields == null
+                        ? movieInfoRepository.findAllById(ids)
+                        : movieInfoRepository.findAllById(ids, fields).map(movieInfo -> MovieInfoFields.retain(movieInfo, fields)))
+                        .collectMap(MovieInfo::getMovieInfoId)
+                        .flatMapIterable(byId -> ids.stream()
+                                .map(byId::get)
+                                .filter(Objects::nonNull)
+                                .collect(Collectors.toList())));
+    }
+
+    private static Integer cursorYear(String year) {
+        try {
+            return year == null ? null : Integer.valueOf(year);
+        } catch (NumberFormatException ex) {
+            throw new MovieInfoDataException("invalid cursor");
+        }
+    }
+
+    private static int pageLimit(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT);
+    }
+
+    private static Mono<MovieInfoPage> toPage(Flux<MovieInfo> movieInfos, int pageLimit, Function<MovieInfo, String> cursorOf) {
+        return movieInfos.collectList()
+                .map(list -> {
+                    if (list.size() <= pageLimit) {
+                        return new MovieInfoPage(list, null);
+                    }
+                    var page = list.subList(0, pageLimit);
+                    return new MovieInfoPage(page, cursorOf.apply(page.get(pageLimit - 1)));
+                });
+    }
+
+    // Cursors of the sorted queries carry the sort key and the _id tie breaker
+    private static String encodeCursor(String key, String movieInfoId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + "\n" + movieInfoId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        if (cursor == null) {
+            return new String[2];
+        }
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separator = decoded.lastIndexOf('\n');
+            if (separator < 0) {
+                throw new MovieInfoDataException("invalid cursor");
+            }
+            return new String[]{decoded.substring(0, separator), decoded.substring(separator + 1)};
+        } catch (IllegalArgumentException ex) {
+            throw new MovieInfoDataException("invalid cursor");
+        }
+    }
+
     public Mono<MovieInfo> getMovieInfoById(String id) {
-        return movieInfoRepository.findById(id);
+        // Read-through, a cache hit never reaches Mongo and concurrent misses for one id share one findById
+        return Mono.defer(() -> {
+            var cached = movieInfoCache.get(id);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return movieInfoByIdFlights.execute(id, () -> Mono.defer(() -> {
+                var ticket = movieInfoCache.ticket();
+                return movieInfoRepository.findById(id)
+                        .doOnNext(movieInfo -> movieInfoCache.put(movieInfo, ticket));
+            }));
+        });
+    }
+
+    public Mono<MovieInfo> getMovieInfoById(String id, Set<String> fields) {
+        if (fields == null) {
+            return getMovieInfoById(id);
+        }
+        // A cached document is cut down to the fields, a partial document read from Mongo is not cached
+        return Mono.defer(() -> {
+            var cached = movieInfoCache.get(id);
+            if (cached != null) {
+                return Mono.just(MovieInfoFields.retain(cached, fields));
+            }
+            return movieInfoRepository.findById(id, fields)
+                    .map(movieInfo -> MovieInfoFields.retain(movieInfo, fields));
+        });
+    }
+
+    // Cache hits first, then the cache misses in the order Mongo returns them from one $in query,
+    // then the ids that do not exist
+    public Flux<MovieInfoBatchResult> getMoviesInfoByIds(List<String> ids, Set<String> fields) {
+        return Flux.defer(() -> {
+            var requested = new LinkedHashSet<String>();
+            ids.stream().filter(Objects::nonNull).forEach(requested::add);
+            if (requested.size() > MAX_PAGE_LIMIT) {
+                return Flux.error(new MovieInfoDataException("at most " + MAX_PAGE_LIMIT + " ids per request"));
+            }
+            var found = new ArrayList<MovieInfo>();
+            var missing = new LinkedHashSet<String>();
+            requested.forEach(id -> {
+                var cached = movieInfoCache.get(id);
+                if (cached != null) {
+                    found.add(MovieInfoFields.retain(cached, fields));
+                } else {
+                    missing.add(id);
+                }
+            });
+            if (missing.isEmpty()) {
+                return Flux.fromIterable(found).map(MoviesInfoService::found);
+            }
+            // A copy, missing is emptied as the documents arrive
+            var misses = List.copyOf(missing);
+            var ticket = movieInfoCache.ticket();
+            var fromMongo = fields == null
+                    ? movieInfoRepository.findAllById(misses).doOnNext(movieInfo -> movieInfoCache.put(movieInfo, ticket))
+                    : movieInfoRepository.findAllById(misses, fields).map(movieInfo -> MovieInfoFields.retain(movieInfo, fields));
+            return Flux.fromIterable(found)
+                    .concatWith(fromMongo.doOnNext(movieInfo -> missing.remove(movieInfo.getMovieInfoId())))
+                    .map(MoviesInfoService::found)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(missing)
+                            .map(id -> new MovieInfoBatchResult(id, MovieInfoBatchResult.Status.MISSING, null))));
+        });
+    }
+
+    private static MovieInfoBatchResult found(MovieInfo movieInfo) {
+        return new MovieInfoBatchResult(movieInfo.getMovieInfoId(), MovieInfoBatchResult.Status.FOUND, movieInfo);
+    }
+
+    public Mono<Long> getMovieInfoVersion(String id) {
+        // Enough to answer If-None-Match without loading the whole document
+        return Mono.defer(() -> {
+            var cached = movieInfoCache.get(id);
+            if (cached != null) {
+                return Mono.justOrEmpty(cached.getVersion());
+            }
+            return movieInfoRepository.findVersionById(id)
+                    .mapNotNull(MovieInfo::getVersion);
+        });
     }
 
     public Mono<MovieInfo> updateMovieInfo(MovieInfo movieInfo, String id) {
-        return movieInfoRepository.findById(id).flatMap(mInfo -> {
-            mInfo.setMovieInfoId(movieInfo.getMovieInfoId());
-            mInfo.setYear(movieInfo.getYear());
-            mInfo.setCast(movieInfo.getCast());
-            mInfo.setName(movieInfo.getName());
-            mInfo.setReleaseDate(movieInfo.getReleaseDate());
-            return movieInfoRepository.save(mInfo);
+        return updateMovieInfo(movieInfo, id, null);
+    }
+
+    public Mono<MovieInfo> updateMovieInfo(MovieInfo movieInfo, String id, Long expectedVersion) {
+        // One findAndModify instead of findById + save, so concurrent updates cannot overwrite each other
+        var fields = new HashMap<String, Object>();
+        fields.put("name", movieInfo.getName());
+        fields.put("year", movieInfo.getYear());
+        fields.put("cast", movieInfo.getCast());
+        fields.put("releaseDate", movieInfo.getReleaseDate());
+        return Mono.defer(() -> {
+            var ticket = movieInfoCache.ticket();
+            return movieInfoRepository.findAndSet(id, expectedVersion, fields)
+                    .doOnNext(result -> updated(result, ticket));
+        });
+    }
+
+    public Mono<MovieInfo> patchMovieInfo(MovieInfo movieInfo, String id) {
+        return patchMovieInfo(movieInfo, id, null);
+    }
+
+    public Mono<MovieInfo> patchMovieInfo(MovieInfo movieInfo, String id, Long expectedVersion) {
+        // Only the properties present in the request are set
+        var fields = new HashMap<String, Object>();
+        if (movieInfo.getName() != null) {
+            fields.put("name", movieInfo.getName());
+        }
+        if (movieInfo.getYear() != null) {
+            fields.put("year", movieInfo.getYear());
+        }
+        if (movieInfo.getCast() != null) {
+            fields.put("cast", movieInfo.getCast());
+        }
+        if (movieInfo.getReleaseDate() != null) {
+            fields.put("releaseDate", movieInfo.getReleaseDate());
+        }
+        if (fields.isEmpty()) {
+            return getMovieInfoById(id)
+                    .filter(current -> expectedVersion == null || expectedVersion.equals(current.getVersion()));
+        }
+        var error = fieldErrors(fields);
+        if (!error.isEmpty()) {
+            return Mono.error(new MovieInfoDataException(error));
+        }
+        return Mono.defer(() -> {
+            var ticket = movieInfoCache.ticket();
+            return movieInfoRepository.findAndSet(id, expectedVersion, fields)
+                    .doOnNext(result -> updated(result, ticket));
         });
     }
 
+    private String fieldErrors(Map<String, Object> fields) {
+        return fields.entrySet().stream()
+                .flatMap(field -> validator.validateValue(MovieInfo.class, field.getKey(), field.getValue()).stream())
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
     public Mono<Void> deleteMovieInfo(String id) {
-        return movieInfoRepository.deleteById(id);
+        return movieInfoRepository.deleteByMovieInfoId(id)
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        deleted(id);
+                    }
+                })
+                .doFinally(signalType -> deletedFromCache(id))
+                .then();
+    }
+
+    // Emits false when no document with this id and version exists
+    public Mono<Boolean> deleteMovieInfo(String id, Long expectedVersion) {
+        return movieInfoRepository.deleteByMovieInfoIdAndVersion(id, expectedVersion)
+                .map(deleted -> deleted > 0)
+                .doOnNext(deleted -> {
+                    if (deleted) {
+                        deleted(id);
+                    }
+                })
+                .doFinally(signalType -> deletedFromCache(id));
+    }
+
+    public Flux<MovieInfoEvent> streamMovieInfoEvents() {
+        return movieInfoEventPublisher.events();
+    }
+
+    public Flux<ServerSentEvent<MovieInfoEvent>> streamMovieInfoServerSentEvents() {
+        return movieInfoEventPublisher.serverSentEvents();
+    }
+
+    // Keeps the search index, the stats and the change feed in step with every successful write
+    private void created(MovieInfo movieInfo) {
+        movieInfoSearchIndex.index(movieInfo);
+        movieInfoStatsService.invalidate();
+        movieInfoEventPublisher.created(movieInfo);
+    }
+
+    private void updated(MovieInfo movieInfo, long ticket) {
+        movieInfoCache.put(movieInfo, ticket);
+        movieInfoSearchIndex.index(movieInfo);
+        movieInfoStatsService.invalidate();
+        movieInfoEventPublisher.updated(movieInfo);
+    }
+
+    // Reads already running for the id neither refill the cache nor are joined by later callers
+    private void deletedFromCache(String movieInfoId) {
+        movieInfoByIdFlights.forget(movieInfoId);
+        movieInfoCache.invalidate(movieInfoId);
+    }
+
+    private void deleted(String movieInfoId) {
+        movieInfoSearchIndex.remove(movieInfoId);
+        movieInfoStatsService.invalidate();
+        movieInfoEventPublisher.deleted(movieInfoId);
     }
 }
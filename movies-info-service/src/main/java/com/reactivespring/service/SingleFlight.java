@@ -0,0 +1,56 @@
+package com.reactivespring.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Concurrent calls for the same key share one in-flight Mono instead of each running the supplier.
+// The entry is removed when the flight completes, fails or is cancelled by all of its callers,
+// the next call after that starts a new flight.
+// 1 - executions / requests is the share of calls that were collapsed into another one.
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter requests;
+    private final Counter executions;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.requests = meterRegistry.counter("movieinfo.singleflight.requests", "name", name);
+        this.executions = meterRegistry.counter("movieinfo.singleflight.executions", "name", name);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> supplier) {
+        return Mono.defer(() -> {
+            requests.increment();
+            return inFlight.computeIfAbsent(key, k -> flight(k, supplier));
+        });
+    }
+
+    private Mono<V> flight(K key, Supplier<Mono<V>> supplier) {
+        executions.increment();
+        var flight = new AtomicReference<Mono<V>>();
+        // refCount cancels the supplier's Mono once every caller has cancelled. A caller cancelling within
+        // onSubscribe, before the flight is connected, leaves it running until the supplier's Mono terminates.
+        flight.set(supplier.get()
+                .doFinally(signalType -> inFlight.remove(key, flight.get()))
+                .flux()
+                .publish()
+                .refCount()
+                .singleOrEmpty());
+        return flight.get();
+    }
+
+    // Callers after this start a new flight, the ones already joined still get its result
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+}
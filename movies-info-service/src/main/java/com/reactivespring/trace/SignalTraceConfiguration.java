@@ -0,0 +1,25 @@
+package com.reactivespring.trace;
+
+import com.reactivespring.operator.SignalTracer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Set;
+
+// The SignalTracer of reactive-programming-using-reactor as a bean, configured under movieinfo.trace
+@Configuration
+public class SignalTraceConfiguration {
+
+    // shutdown logs what is still buffered and stops the drain thread
+    @Bean(destroyMethod = "shutdown")
+    public SignalTracer signalTracer(@Value("${movieinfo.trace.enabled:false}") boolean enabled,
+                                     @Value("${movieinfo.trace.sample-rate:0.01}") double sampleRate,
+                                     @Value("${movieinfo.trace.signals:ON_NEXT,ON_ERROR,ON_COMPLETE,CANCEL}") String signals,
+                                     @Value("${movieinfo.trace.buffer-size:4096}") int bufferSize,
+                                     @Value("${movieinfo.trace.drain-interval:100ms}") Duration drainInterval) {
+        return new SignalTracer(enabled, sampleRate, SignalTracer.parseSignals(signals), bufferSize, drainInterval);
+    }
+}
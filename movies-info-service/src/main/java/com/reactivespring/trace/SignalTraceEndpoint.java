@@ -0,0 +1,43 @@
+package com.reactivespring.trace;
+
+import com.reactivespring.operator.SignalTracer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// GET /actuator/signaltrace shows the SignalTracer settings, POST changes them without a restart, e.g.
+// {"enabled": true, "sampleRate": 0.1, "signals": "ON_NEXT,ON_ERROR"}. Fields left out keep their value.
+@Component
+@Endpoint(id = "signaltrace")
+public class SignalTraceEndpoint {
+
+    private final SignalTracer signalTracer;
+
+    public SignalTraceEndpoint(SignalTracer signalTracer) {
+        this.signalTracer = signalTracer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        var settings = new LinkedHashMap<String, Object>();
+        settings.put("enabled", signalTracer.isEnabled());
+        settings.put("sampleRate", signalTracer.getSampleRate());
+        settings.put("signals", signalTracer.getSignals());
+        settings.put("dropped", signalTracer.getDropped());
+        return settings;
+    }
+
+    @WriteOperation
+    public Map<String, Object> configure(@Nullable Boolean enabled, @Nullable Double sampleRate, @Nullable String signals) {
+        signalTracer.configure(
+                enabled != null ? enabled : signalTracer.isEnabled(),
+                sampleRate != null ? sampleRate : signalTracer.getSampleRate(),
+                signals != null ? SignalTracer.parseSignals(signals) : signalTracer.getSignals());
+        return settings();
+    }
+}
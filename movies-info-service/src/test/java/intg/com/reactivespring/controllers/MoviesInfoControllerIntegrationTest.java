@@ -1,19 +1,34 @@
 package com.reactivespring.controllers;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
 import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoSearchIndex;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 // Make sure to use profiles defined other than in application.yml
@@ -25,6 +40,9 @@ class MoviesInfoControllerIntegrationTest {
     @Autowired
     MovieInfoRepository movieInfoRepository;
 
+    @Autowired
+    MovieInfoSearchIndex movieInfoSearchIndex;
+
     @Autowired
     private WebTestClient webTestClient;
 
@@ -63,6 +81,68 @@ class MoviesInfoControllerIntegrationTest {
                 });
     }
 
+    @Test
+    void addMovieInfos() {
+        var movieInfos = Flux.just(new MovieInfo(null, "Batman Begins1",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "", 2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18")),
+                // duplicate of the movie info saved in setup
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        var results = webTestClient
+                .post()
+                .uri(MOVIE_INFO_ENDPOINT + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(movieInfos, MovieInfo.class)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoBulkResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(results)
+                .assertNext(result -> {
+                    assertEquals(0, result.getIndex());
+                    assertEquals(MovieInfoBulkResult.Status.CREATED, result.getStatus());
+                    assert result.getMovieInfoId() != null;
+                })
+                .assertNext(result -> {
+                    assertEquals(1, result.getIndex());
+                    assertEquals(MovieInfoBulkResult.Status.INVALID, result.getStatus());
+                    assertEquals("movieInfo.name must be present", result.getError());
+                })
+                .assertNext(result -> {
+                    assertEquals(2, result.getIndex());
+                    assertEquals(MovieInfoBulkResult.Status.FAILED, result.getStatus());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.count())
+                .expectNext(4L)
+                .verifyComplete();
+    }
+
+    @Test
+    void getMoviesInfoByIds() {
+        webTestClient
+                .post()
+                .uri(MOVIE_INFO_ENDPOINT + "/batch-get")
+                .bodyValue(List.of("abc", "def"))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].movieInfoId").isEqualTo("abc")
+                .jsonPath("$[0].status").isEqualTo("FOUND")
+                .jsonPath("$[0].movieInfo.name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$[1].movieInfoId").isEqualTo("def")
+                .jsonPath("$[1].status").isEqualTo("MISSING");
+    }
+
     @Test
     void getAllMovies() {
         webTestClient
@@ -75,6 +155,233 @@ class MoviesInfoControllerIntegrationTest {
                 .hasSize(3);
     }
 
+    @Test
+    void streamAllMovies() {
+        var movieInfoFlux = webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoFlux)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void getMoviesInfoPage_walksAllPages() {
+        var movieInfoIds = new ArrayList<String>();
+        String after = null;
+        var pages = 0;
+        do {
+            var cursor = after;
+            var page = webTestClient
+                    .get()
+                    .uri(uriBuilder -> uriBuilder.path(MOVIE_INFO_ENDPOINT)
+                            .queryParam("limit", 2)
+                            .queryParamIfPresent("after", Optional.ofNullable(cursor))
+                            .build())
+                    .exchange()
+                    .expectStatus()
+                    .is2xxSuccessful()
+                    .expectBody(MovieInfoPage.class)
+                    .returnResult()
+                    .getResponseBody();
+            assert page != null;
+            page.getMovieInfos().forEach(movieInfo -> movieInfoIds.add(movieInfo.getMovieInfoId()));
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null);
+
+        assertEquals(2, pages);
+        assertEquals(3, movieInfoIds.size());
+        assertEquals(3, movieInfoIds.stream().distinct().count());
+    }
+
+    @Test
+    void getMoviesInfoPage_lastPage() {
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "?limit=10")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfoPage.class)
+                .consumeWith(movieInfoPageEntityExchangeResult -> {
+                    var page = movieInfoPageEntityExchangeResult.getResponseBody();
+                    assert page != null;
+                    assertEquals(3, page.getMovieInfos().size());
+                    assertNull(page.getNextCursor());
+                });
+    }
+
+    @Test
+    void getMoviesInfoByYear() {
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "?year=2008")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(1)
+                .jsonPath("$.movieInfos[0].name").isEqualTo("The Dark Knight");
+    }
+
+    @Test
+    void getMoviesInfoByYearRange_walksAllPages() {
+        var names = new ArrayList<String>();
+        String after = null;
+        do {
+            var cursor = after;
+            var page = webTestClient
+                    .get()
+                    .uri(uriBuilder -> uriBuilder.path(MOVIE_INFO_ENDPOINT)
+                            .queryParam("fromYear", 2005)
+                            .queryParam("toYear", 2010)
+                            .queryParam("limit", 1)
+                            .queryParamIfPresent("after", Optional.ofNullable(cursor))
+                            .build())
+                    .exchange()
+                    .expectStatus()
+                    .is2xxSuccessful()
+                    .expectBody(MovieInfoPage.class)
+                    .returnResult()
+                    .getResponseBody();
+            assert page != null;
+            page.getMovieInfos().forEach(movieInfo -> names.add(movieInfo.getName()));
+            after = page.getNextCursor();
+        } while (after != null);
+
+        assertEquals(List.of("Batman Begins", "The Dark Knight"), names);
+    }
+
+    @Test
+    void getMoviesInfoByYearRange_fields() {
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "?fromYear=2005&toYear=2012&limit=2&fields=name")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(2)
+                .jsonPath("$.movieInfos[0].name").isEqualTo("Batman Begins")
+                .jsonPath("$.movieInfos[0].year").doesNotExist()
+                .jsonPath("$.movieInfos[0].cast").doesNotExist()
+                .jsonPath("$.nextCursor").exists();
+    }
+
+    @Test
+    void getMoviesInfoByYearRange_openEnded() {
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "?fromYear=2006&limit=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(1)
+                .jsonPath("$.movieInfos[0].name").isEqualTo("The Dark Knight")
+                .jsonPath("$.nextCursor").exists();
+
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "?toYear=2006")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(1)
+                .jsonPath("$.movieInfos[0].name").isEqualTo("Batman Begins");
+    }
+
+    @Test
+    void getMoviesInfoByNamePrefix() {
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "?namePrefix=Dark")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(1)
+                .jsonPath("$.movieInfos[0].movieInfoId").isEqualTo("abc");
+    }
+
+    @Test
+    void streamMovieInfoEvents() {
+        var events = webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody()
+                // Other tests share the application context, so the replay window may hold their events
+                .filter(event -> "stream".equals(event.getMovieInfoId()));
+
+        StepVerifier.create(events.take(2))
+                .then(() -> {
+                    webTestClient
+                            .post()
+                            .uri(MOVIE_INFO_ENDPOINT)
+                            .bodyValue(new MovieInfo("stream", "Batman Begins1",
+                                    2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))
+                            .exchange()
+                            .expectStatus()
+                            .isCreated();
+                    webTestClient
+                            .delete()
+                            .uri(MOVIE_INFO_ENDPOINT + "/{id}", "stream")
+                            .exchange()
+                            .expectStatus()
+                            .isNoContent();
+                })
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.CREATED, event.getType()))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.DELETED, event.getType()))
+                .verifyComplete();
+    }
+
+    @Test
+    void searchMoviesInfo() {
+        // The fixtures are saved through the repository, so the index has not seen them yet
+        movieInfoSearchIndex.rebuild().block();
+
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "/search?q=dark bale&size=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("The Dark Knight")
+                .jsonPath("$[1].movieInfoId").isEqualTo("abc");
+
+        webTestClient
+                .delete()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "/search?q=rises")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
     @Test
     void getmoviebyid() {
         var movieInfoId = "abc";
@@ -116,6 +423,37 @@ class MoviesInfoControllerIntegrationTest {
                 });
     }
 
+    @Test
+    void patchMovieInfo() {
+        var movieInfoId = "abc";
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", movieInfoId)
+                .bodyValue(Map.of("year", 2013))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var responseBody = movieInfoEntityExchangeResult.getResponseBody();
+                    assert responseBody != null;
+                    assertEquals(2013, responseBody.getYear());
+                    assertEquals("Dark Knight Rises", responseBody.getName());
+                    assertEquals(List.of("Christian Bale", "Tom Hardy"), responseBody.getCast());
+                });
+    }
+
+    @Test
+    void patchMovieInfo_not_found() {
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", "def")
+                .bodyValue(Map.of("year", 2013))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
     @Test
     void deleteMovieInfo() {
         // given
@@ -153,6 +491,76 @@ class MoviesInfoControllerIntegrationTest {
                 .hasSize(2);
     }
 
+    @Test
+    void getmoviebyid_notModified() {
+        var movieInfoId = "abc";
+        var eTag = webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+        assertEquals("\"0\"", eTag);
+
+        webTestClient
+                .get()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", movieInfoId)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void updateMovieById_ifMatch() {
+        var movieInfoId = "abc";
+        var movieInfo = new MovieInfo(null, "Batman Begins2",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        webTestClient
+                .put()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", movieInfoId)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // the same precondition is now stale
+        webTestClient
+                .put()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", movieInfoId)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    void deleteMovieInfo_ifMatch() {
+        webTestClient
+                .delete()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"5\"")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient
+                .delete()
+                .uri(MOVIE_INFO_ENDPOINT + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+    }
+
     @Test
     void updateMovieById_not_found() {
         var movieInfoId = "def";
@@ -1,17 +1,21 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoCount;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -59,6 +63,36 @@ class MovieInfoRepositoryIntegrationTest {
                 .verifyComplete();
     }
 
+    @Test
+    void findAllByOrderByMovieInfoIdAsc() {
+        // string ids sort before generated ObjectIds
+        var moviesInfoFlux = movieInfoRepository.findAllByOrderByMovieInfoIdAsc(PageRequest.of(0, 1));
+        StepVerifier.create(moviesInfoFlux)
+                .assertNext(movieInfo -> assertEquals("abc", movieInfo.getMovieInfoId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void findAfterStringId() {
+        var moviesInfoFlux = movieInfoRepository.findAfterStringId("abc", PageRequest.of(0, 5));
+        StepVerifier.create(moviesInfoFlux)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void findByMovieInfoIdGreaterThan() {
+        var objectIdPage = movieInfoRepository.findAfterStringId("abc", PageRequest.of(0, 1))
+                .collectList().block();
+        assertEquals(1, objectIdPage.size());
+
+        var moviesInfoFlux = movieInfoRepository
+                .findByMovieInfoIdGreaterThanOrderByMovieInfoIdAsc(objectIdPage.get(0).getMovieInfoId(), PageRequest.of(0, 5));
+        StepVerifier.create(moviesInfoFlux)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
     @Test
     void saveMovieInfo() {
         var movieInfo = new MovieInfo(null, "Batman Begins1",
@@ -73,6 +107,25 @@ class MovieInfoRepositoryIntegrationTest {
                 .verifyComplete();
     }
 
+    @Test
+    void insertAllUnordered() {
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo(null, "Batman Begins1",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+
+        var results = movieInfoRepository.insertAllUnordered(movieInfos);
+
+        // the duplicate key on "abc" does not stop the second insert
+        StepVerifier.create(results)
+                .assertNext(result -> assertEquals(MovieInfoBulkResult.Status.FAILED, result.getStatus()))
+                .assertNext(result -> {
+                    assertEquals(MovieInfoBulkResult.Status.CREATED, result.getStatus());
+                    assertEquals("Batman Begins1", movieInfoRepository.findById(result.getMovieInfoId()).block().getName());
+                })
+                .verifyComplete();
+    }
+
     @Test
     void updateMovieInfo() {
         // given
@@ -90,6 +143,60 @@ class MovieInfoRepositoryIntegrationTest {
                 .verifyComplete();
     }
 
+    @Test
+    void findAndSet() {
+        var moviesInfoMono = movieInfoRepository.findAndSet("abc", null, Map.of("year", 2011));
+
+        StepVerifier.create(moviesInfoMono)
+                .assertNext(mInfo -> {
+                    assertEquals(2011, mInfo.getYear());
+                    assertEquals("Dark Knight Rises", mInfo.getName());
+                    assertEquals(1L, mInfo.getVersion());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findAndSet_notFound() {
+        StepVerifier.create(movieInfoRepository.findAndSet("def", null, Map.of("year", 2011)))
+                .verifyComplete();
+    }
+
+    @Test
+    void findAndSet_versionMismatch() {
+        StepVerifier.create(movieInfoRepository.findAndSet("abc", 7L, Map.of("year", 2011)))
+                .verifyComplete();
+    }
+
+    @Test
+    void findVersionById() {
+        StepVerifier.create(movieInfoRepository.findVersionById("abc"))
+                .assertNext(mInfo -> {
+                    assertEquals(0L, mInfo.getVersion());
+                    assertEquals(null, mInfo.getName());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void countByYearAndDecade() {
+        StepVerifier.create(movieInfoRepository.countByYear())
+                .expectNext(new MovieInfoCount<>(2005, 1), new MovieInfoCount<>(2008, 1), new MovieInfoCount<>(2012, 1))
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.countByDecade())
+                .expectNext(new MovieInfoCount<>(2000, 2), new MovieInfoCount<>(2010, 1))
+                .verifyComplete();
+    }
+
+    @Test
+    void countByCastMember() {
+        StepVerifier.create(movieInfoRepository.countByCastMember())
+                .expectNext(new MovieInfoCount<>("Christian Bale", 3))
+                .expectNext(new MovieInfoCount<>("HeathLedger", 1), new MovieInfoCount<>("Michael Cane", 1), new MovieInfoCount<>("Tom Hardy", 1))
+                .verifyComplete();
+    }
+
     @Test
     void deleteMovieInfo() {
 
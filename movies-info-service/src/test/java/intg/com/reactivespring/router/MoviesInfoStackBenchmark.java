@@ -0,0 +1,146 @@
+package com.reactivespring.router;
+
+import com.reactivespring.MoviesInfoServiceApplication;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.service.MovieInfoCache;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Not part of ./gradlew test, run with ./gradlew benchmark.
+// Starts the service once per movieinfo.web.stack and sends the same GET /v1/movieinfos/{id} load to both,
+// the movie info is served from MovieInfoCache so neither run needs Mongo. Rounds alternate between the
+// stacks and for each the round with the median CPU time is printed: p50 / p99 latency, throughput, CPU time and bytes allocated
+// per request. CPU and allocation are measured for the whole JVM, the client's share is the same for both stacks.
+@Tag("benchmark")
+class MoviesInfoStackBenchmark {
+
+    private static final int REQUESTS = 20_000;
+    private static final int WARMUP_REQUESTS = 20_000;
+    private static final int CONCURRENCY = 32;
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.OperatingSystemMXBean OS =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    @Test
+    void annotatedVersusFunctional() {
+        try (var annotated = start("annotated"); var functional = start("functional")) {
+            var annotatedClient = client(annotated);
+            var functionalClient = client(functional);
+            run(annotatedClient, WARMUP_REQUESTS);
+            run(functionalClient, WARMUP_REQUESTS);
+
+            var annotatedRounds = new ArrayList<Result>();
+            var functionalRounds = new ArrayList<Result>();
+            for (int round = 0; round < ROUNDS; round++) {
+                annotatedRounds.add(run(annotatedClient, REQUESTS));
+                functionalRounds.add(run(functionalClient, REQUESTS));
+            }
+            System.out.println(median(annotatedRounds).format("annotated"));
+            System.out.println(median(functionalRounds).format("functional"));
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String stack) {
+        var context = new SpringApplicationBuilder(MoviesInfoServiceApplication.class)
+                .profiles("benchmark")
+                .properties(
+                        "server.port=0",
+                        "movieinfo.web.stack=" + stack,
+                        "movieinfo.cache.ttl=1h",
+                        // Never reached by the measured requests, only by the search index load at startup
+                        "spring.data.mongodb.uri=mongodb://localhost:27017/benchmark",
+                        "spring.data.mongodb.auto-index-creation=false",
+                        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration",
+                        "logging.level.org.mongodb.driver=OFF",
+                        "logging.level.org.springframework.data.mongodb=OFF",
+                        "logging.level.com.reactivespring=OFF")
+                .run();
+        var movieInfoCache = context.getBean(MovieInfoCache.class);
+        movieInfoCache.put(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 1L), movieInfoCache.ticket());
+        return context;
+    }
+
+    private static WebClient client(ConfigurableApplicationContext context) {
+        var port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+        return WebClient.create("http://localhost:" + port);
+    }
+
+    private static Result run(WebClient client, int requests) {
+        var latencies = new long[requests];
+        var cpuStart = OS.getProcessCpuTime();
+        var allocatedStart = allocatedBytes();
+        var start = System.nanoTime();
+        Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    var requestStart = System.nanoTime();
+                    return client.get()
+                            .uri("/v1/movieinfos/{id}", "abc")
+                            .retrieve()
+                            .bodyToMono(String.class)
+                            .doOnSuccess(body -> latencies[i] = System.nanoTime() - requestStart);
+                }), CONCURRENCY)
+                .blockLast();
+        var elapsed = System.nanoTime() - start;
+        var cpu = OS.getProcessCpuTime() - cpuStart;
+        var allocated = allocatedBytes() - allocatedStart;
+        Arrays.sort(latencies);
+        return new Result(requests, latencies[requests / 2], latencies[(int) (requests * 0.99)],
+                requests / (elapsed / 1e9), cpu / requests, allocated / requests);
+    }
+
+    // Threads that ended during the run are missing from the sum, the event loops and workers all live on
+    private static long allocatedBytes() {
+        return Arrays.stream(THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds()))
+                .filter(bytes -> bytes > 0)
+                .sum();
+    }
+
+    private static Result median(List<Result> rounds) {
+        return rounds.stream()
+                .sorted(Comparator.comparingLong(result -> result.cpuPerRequest))
+                .skip(rounds.size() / 2)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static class Result {
+        private final int requests;
+        private final long p50;
+        private final long p99;
+        private final double throughput;
+        private final long cpuPerRequest;
+        private final long allocatedPerRequest;
+
+        Result(int requests, long p50, long p99, double throughput, long cpuPerRequest, long allocatedPerRequest) {
+            this.requests = requests;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.throughput = throughput;
+            this.cpuPerRequest = cpuPerRequest;
+            this.allocatedPerRequest = allocatedPerRequest;
+        }
+
+        String format(String stack) {
+            return String.format("%-10s requests=%d concurrency=%d p50=%.3fms p99=%.3fms throughput=%.0f/s cpu=%.1fus/req alloc=%.1fKB/req",
+                    stack, requests, CONCURRENCY, p50 / 1e6, p99 / 1e6, throughput,
+                    cpuPerRequest / 1e3, allocatedPerRequest / 1024.0);
+        }
+    }
+}
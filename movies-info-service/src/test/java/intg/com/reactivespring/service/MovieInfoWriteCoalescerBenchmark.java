@@ -0,0 +1,78 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+// Not part of ./gradlew test, run with ./gradlew benchmark.
+// Inserts the same number of movie infos with the given concurrency, once with a save per call and once
+// through the coalescer, and prints p50 / p99 latency of the calls and the overall throughput.
+@Tag("benchmark")
+@DataMongoTest
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.5.5")
+@ActiveProfiles("test")
+class MovieInfoWriteCoalescerBenchmark {
+
+    private static final int INSERTS = 20_000;
+    private static final int WARMUP_INSERTS = 2_000;
+    private static final int CONCURRENCY = 256;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void saveVersusCoalescedInsert() {
+        var plain = new MovieInfoWriteCoalescer(movieInfoRepository, false, 100, Duration.ofMillis(5), 4, new SimpleMeterRegistry());
+        var coalesced = new MovieInfoWriteCoalescer(movieInfoRepository, true, 100, Duration.ofMillis(5), 4, new SimpleMeterRegistry());
+
+        run("save", plain::insert, WARMUP_INSERTS);
+        run("coalesced", coalesced::insert, WARMUP_INSERTS);
+
+        System.out.println(run("save", plain::insert, INSERTS));
+        System.out.println(run("coalesced", coalesced::insert, INSERTS));
+        coalesced.shutdown();
+    }
+
+    private String run(String name, Function<MovieInfo, Mono<MovieInfo>> insert, int inserts) {
+        var latencies = new long[inserts];
+        var start = System.nanoTime();
+        Flux.range(0, inserts)
+                .flatMap(i -> Mono.defer(() -> {
+                    var callStart = System.nanoTime();
+                    return insert.apply(movieInfo())
+                            .doOnSuccess(movieInfo -> latencies[i] = System.nanoTime() - callStart);
+                }), CONCURRENCY)
+                .blockLast();
+        var elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return String.format("%-9s inserts=%d concurrency=%d p50=%.2fms p99=%.2fms throughput=%.0f/s",
+                name, inserts, CONCURRENCY,
+                latencies[inserts / 2] / 1e6, latencies[(int) (inserts * 0.99)] / 1e6,
+                inserts / (elapsed / 1e9));
+    }
+
+    private static MovieInfo movieInfo() {
+        return new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+}
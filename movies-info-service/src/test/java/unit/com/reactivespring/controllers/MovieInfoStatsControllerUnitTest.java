@@ -0,0 +1,62 @@
+package com.reactivespring.controllers;
+
+import com.reactivespring.domain.MovieInfoCount;
+import com.reactivespring.service.MovieInfoStatsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MovieInfoStatsController.class)
+@AutoConfigureWebTestClient
+public class MovieInfoStatsControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MovieInfoStatsService movieInfoStatsService;
+
+    private static String STATS_URL = "/v1/movieinfos/stats";
+
+    @Test
+    void countByDecade() {
+        // when
+        when(movieInfoStatsService.countByDecade()).thenReturn(Flux.just(new MovieInfoCount<>(2000, 2), new MovieInfoCount<>(2010, 1)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(STATS_URL + "/decades")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].key").isEqualTo(2000)
+                .jsonPath("$[0].count").isEqualTo(2)
+                .jsonPath("$[1].key").isEqualTo(2010);
+    }
+
+    @Test
+    void countByCastMember_ndjson() {
+        // when
+        when(movieInfoStatsService.countByCastMember()).thenReturn(Flux.just(new MovieInfoCount<>("Christian Bale", 3)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(STATS_URL + "/cast")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(String.class)
+                .isEqualTo("{\"key\":\"Christian Bale\",\"count\":3}\n");
+    }
+}
@@ -1,25 +1,54 @@
 package com.reactivespring.controllers;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.ProjectedMovieInfo;
+import com.reactivespring.exception.MovieInfoDataException;
+import com.reactivespring.exception.MovieInfoStreamLimitException;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.trace.SignalTraceConfiguration;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
 @AutoConfigureWebTestClient
+@Import(SignalTraceConfiguration.class)
 public class MoviesInfoControllerUnitTest {
 
     @Autowired
@@ -96,6 +125,61 @@ public class MoviesInfoControllerUnitTest {
     }
 
 
+    @Test
+    void addMovieInfos() {
+        // given
+        var movieInfos = Flux.just(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "", 2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18")));
+
+        // when
+        when(moviesInfoService.addMovieInfos(isA(Flux.class))).thenReturn(Flux.just(
+                new MovieInfoBulkResult(0, "mockId", MovieInfoBulkResult.Status.CREATED, null),
+                new MovieInfoBulkResult(1, null, MovieInfoBulkResult.Status.INVALID, "movieInfo.name must be present")));
+
+        // then
+        var results = webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(movieInfos, MovieInfo.class)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoBulkResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(results)
+                .assertNext(result -> Assertions.assertEquals(MovieInfoBulkResult.Status.CREATED, result.getStatus()))
+                .assertNext(result -> Assertions.assertEquals(MovieInfoBulkResult.Status.INVALID, result.getStatus()))
+                .verifyComplete();
+    }
+
+    @Test
+    void getMoviesInfoByIds() {
+        // given
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012, null, null);
+
+        // when
+        when(moviesInfoService.getMoviesInfoByIds(List.of("abc", "def"), Set.of("name", "year"))).thenReturn(Flux.just(
+                new MovieInfoBatchResult("abc", MovieInfoBatchResult.Status.FOUND, movieInfo),
+                new MovieInfoBatchResult("def", MovieInfoBatchResult.Status.MISSING, null)));
+
+        // then
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL + "/batch-get?fields=name,year")
+                .bodyValue(List.of("abc", "def"))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoBatchResult.class)
+                .isEqualTo(List.of(new MovieInfoBatchResult("abc", MovieInfoBatchResult.Status.FOUND, movieInfo),
+                        new MovieInfoBatchResult("def", MovieInfoBatchResult.Status.MISSING, null)));
+    }
+
     @Test
     void getAllMoviesInfo() {
         // given
@@ -107,7 +191,7 @@ public class MoviesInfoControllerUnitTest {
                         2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
 
         // when
-        when(moviesInfoService.getAllMoviesInfo()).thenReturn(Flux.fromIterable(movieInfos));
+        when(moviesInfoService.getAllMoviesInfo(null)).thenReturn(Flux.fromIterable(movieInfos));
 
         // then
         webTestClient
@@ -120,6 +204,311 @@ public class MoviesInfoControllerUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void streamAllMoviesInfo() {
+        // given
+        var movieInfos = List.of(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        // when
+        when(moviesInfoService.streamAllMoviesInfo(null)).thenReturn(Flux.fromIterable(movieInfos));
+
+        // then
+        var movieInfoFlux = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoFlux)
+                .assertNext(movieInfo -> Assertions.assertEquals("Batman Begins", movieInfo.getName()))
+                .assertNext(movieInfo -> Assertions.assertEquals("abc", movieInfo.getMovieInfoId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void getMoviesInfoPage() {
+        // given
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        // when
+        when(moviesInfoService.getMoviesInfoPage("abb", 1, null)).thenReturn(Mono.just(new MovieInfoPage(movieInfos, "abc")));
+
+        // then
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIES_INFO_URL)
+                        .queryParam("limit", 1)
+                        .queryParam("after", "abb")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(1)
+                .jsonPath("$.nextCursor").isEqualTo("abc");
+    }
+
+    @Test
+    void getMoviesInfoByYear() {
+        // given
+        var movieInfos = List.of(new MovieInfo("abc", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+
+        // when
+        when(moviesInfoService.getMoviesInfoByYear(2005, null, 10, null)).thenReturn(Mono.just(new MovieInfoPage(movieInfos, null)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?year=2005&limit=10")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos[0].year").isEqualTo(2005);
+    }
+
+    @Test
+    void getMoviesInfoByYearRange() {
+        // when
+        when(moviesInfoService.getMoviesInfoByYearRange(2005, 2008, "cursor", 100, null)).thenReturn(Mono.just(new MovieInfoPage(List.of(), null)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fromYear=2005&toYear=2008&after=cursor")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(0);
+    }
+
+    @Test
+    void getMoviesInfoByYearRange_fromYearOnly() {
+        // when
+        when(moviesInfoService.getMoviesInfoByYearRange(2000, null, null, 10, null)).thenReturn(Mono.just(new MovieInfoPage(List.of(), null)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fromYear=2000&limit=10")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+        verify(moviesInfoService).getMoviesInfoByYearRange(2000, null, null, 10, null);
+        verify(moviesInfoService, never()).getAllMoviesInfo(any());
+    }
+
+    @Test
+    void getMoviesInfoByYearRange_toYearOnly() {
+        // when
+        when(moviesInfoService.getMoviesInfoByYearRange(null, 2000, null, 100, null)).thenReturn(Mono.just(new MovieInfoPage(List.of(), null)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?toYear=2000")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+        verify(moviesInfoService).getMoviesInfoByYearRange(null, 2000, null, 100, null);
+    }
+
+    // Also run against the functional stack by MoviesInfoRouterUnitTest
+    public static Stream<String> filterCombinations() {
+        return Stream.of("?year=2005&namePrefix=Bat", "?year=2005&fromYear=2000", "?toYear=2010&namePrefix=Bat&limit=10",
+                "?year=2005&fromYear=2000&toYear=2010&namePrefix=Bat");
+    }
+
+    @ParameterizedTest
+    @MethodSource("filterCombinations")
+    void getAllMovies_filterCombination(String query) {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + query)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("pass only one of year, fromYear/toYear and namePrefix");
+        verifyNoInteractions(moviesInfoService);
+    }
+
+    @Test
+    void getMoviesInfoByNamePrefix() {
+        // given
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        // when
+        when(moviesInfoService.getMoviesInfoByNamePrefix("Dark", null, 100, null)).thenReturn(Mono.just(new MovieInfoPage(movieInfos, null)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?namePrefix=Dark")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos[0].name").isEqualTo("Dark Knight Rises");
+    }
+
+    @Test
+    void getMoviesInfoByNamePrefix_invalidCursor() {
+        // when
+        when(moviesInfoService.getMoviesInfoByNamePrefix("Dark", "bad", 100, null))
+                .thenReturn(Mono.error(new MovieInfoDataException("invalid cursor")));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?namePrefix=Dark&after=bad")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void streamMovieInfoEvents_ndjson() {
+        // given
+        var event = new MovieInfoEvent(1L, MovieInfoEvent.Type.DELETED, "abc", null, Instant.parse("2022-01-01T00:00:00Z"));
+
+        // when
+        when(moviesInfoService.streamMovieInfoEvents()).thenReturn(Flux.just(event));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoEvent.class)
+                .isEqualTo(List.of(event));
+    }
+
+    @Test
+    void streamMovieInfoEvents_sse() {
+        // given
+        var event = new MovieInfoEvent(7L, MovieInfoEvent.Type.DELETED, "abc", null, Instant.parse("2022-01-01T00:00:00Z"));
+
+        // when
+        when(moviesInfoService.streamMovieInfoServerSentEvents()).thenReturn(Flux.just(
+                ServerSentEvent.<MovieInfoEvent>builder().comment("heartbeat").build(),
+                ServerSentEvent.builder(event).id("7").event("DELETED").build()));
+
+        // then
+        var body = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        assertTrue(body.startsWith(":heartbeat\n\nid:7\nevent:DELETED\ndata:"));
+    }
+
+    @Test
+    void streamMovieInfoEvents_tooManySubscribers() {
+        // when
+        when(moviesInfoService.streamMovieInfoEvents())
+                .thenReturn(Flux.error(new MovieInfoStreamLimitException("too many movie info event subscribers")));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void getAllMoviesInfo_fields() {
+        // when
+        when(moviesInfoService.getAllMoviesInfo(Set.of("name", "year")))
+                .thenReturn(Flux.just(new ProjectedMovieInfo("abc", "Dark Knight Rises", 2012, null, null, 0L)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields=name, year")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$[0]").value(not(hasKey("cast")))
+                .jsonPath("$[0]").value(not(hasKey("releaseDate")));
+    }
+
+    @Test
+    void getAllMoviesInfo_nullPropertiesWritten() {
+        // when
+        when(moviesInfoService.getAllMoviesInfo(null))
+                .thenReturn(Flux.just(new MovieInfo("abc", "Dark Knight Rises", 2012, null, null)));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0]").value(hasKey("cast"))
+                .jsonPath("$[0]").value(hasKey("releaseDate"));
+    }
+
+    @Test
+    void getMovieInfoById_unknownFields() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}?fields=name,rating,budget", "abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("unknown fields budget,rating");
+    }
+
+    @Test
+    void searchMoviesInfo() {
+        // given
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        // when
+        when(moviesInfoService.searchMoviesInfo("bale", 1, 20, null)).thenReturn(Flux.fromIterable(movieInfos));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/search?q=bale&page=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
     @Test
     void getMovieInfoById() {
         // given
@@ -128,7 +517,7 @@ public class MoviesInfoControllerUnitTest {
                         2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
 
         // when
-        when(moviesInfoService.getMovieInfoById(movieInfoId)).thenReturn(Mono.just(movieInfo));
+        when(moviesInfoService.getMovieInfoById(movieInfoId, null)).thenReturn(Mono.just(movieInfo));
 
         // then
         webTestClient
@@ -148,6 +537,81 @@ public class MoviesInfoControllerUnitTest {
 //                });
     }
 
+    @Test
+    void getMovieInfoById_eTag() {
+        var movieInfoId = "abc";
+        var movieInfo = new MovieInfo(movieInfoId, "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 2L);
+
+        // when
+        when(moviesInfoService.getMovieInfoById(movieInfoId, null)).thenReturn(Mono.just(movieInfo));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"2\"");
+    }
+
+    @Test
+    void getMovieInfoById_notModified() {
+        var movieInfoId = "abc";
+
+        // when
+        when(moviesInfoService.getMovieInfoVersion(movieInfoId)).thenReturn(Mono.just(2L));
+        when(moviesInfoService.getMovieInfoById(movieInfoId, null)).thenReturn(Mono.error(new IllegalStateException("full document fetched")));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", movieInfoId)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"2\"");
+    }
+
+    @Test
+    void updateMovieById_preconditionFailed() {
+        var movieInfoId = "abc";
+        var movieInfo = new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        // when
+        when(moviesInfoService.updateMovieInfo(isA(MovieInfo.class), eq(movieInfoId), eq(1L))).thenReturn(Mono.empty());
+
+        // then
+        webTestClient
+                .put()
+                .uri(MOVIES_INFO_URL + "/{id}", movieInfoId)
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    void deleteMovieInfo_preconditionFailed() {
+        // when
+        when(moviesInfoService.deleteMovieInfo("abc", 1L)).thenReturn(Mono.just(false));
+
+        // then
+        webTestClient
+                .delete()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
     @Test
     void updateMovieById() {
 
@@ -178,6 +642,77 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void updateMovieById_validation() {
+        var movieInfo = new MovieInfo(null, "",
+                -2005, List.of(""), LocalDate.parse("2005-06-15"));
+
+        webTestClient
+                .put()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfo.cast must be present,movieInfo.name must be present,movieInfo.year must be present and positive");
+        verifyNoInteractions(moviesInfoService);
+    }
+
+    @Test
+    void patchMovieInfo() {
+        var movieInfoId = "abc";
+
+        // when
+        when(moviesInfoService.patchMovieInfo(isA(MovieInfo.class), isA(String.class))).thenReturn(Mono.just(new MovieInfo(movieInfoId, "Batman Begins",
+                2006, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        // then
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_URL + "/{id}", movieInfoId)
+                .bodyValue(Map.of("year", 2006))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.year").isEqualTo(2006)
+                .jsonPath("$.name").isEqualTo("Batman Begins");
+    }
+
+    @Test
+    void patchMovieInfo_not_found() {
+        // when
+        when(moviesInfoService.patchMovieInfo(isA(MovieInfo.class), isA(String.class))).thenReturn(Mono.empty());
+
+        // then
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_URL + "/{id}", "def")
+                .bodyValue(Map.of("year", 2006))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void patchMovieInfo_invalid() {
+        // when
+        when(moviesInfoService.patchMovieInfo(isA(MovieInfo.class), isA(String.class)))
+                .thenReturn(Mono.error(new MovieInfoDataException("movieInfo.year must be present and positive")));
+
+        // then
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .bodyValue(Map.of("year", -2006))
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfo.year must be present and positive");
+    }
+
     @Test
     void deleteMovieInfo() {
         // given
@@ -0,0 +1,327 @@
+package com.reactivespring.router;
+
+import com.reactivespring.controllers.MoviesInfoController;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.exception.MovieInfoDataException;
+import com.reactivespring.exception.MovieInfoStreamLimitException;
+import com.reactivespring.exceptionhandler.FunctionalErrorHandler;
+import com.reactivespring.handler.MoviesInfoHandler;
+import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.trace.SignalTraceConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// The functional stack answers the requests of MoviesInfoControllerUnitTest with the same responses,
+// the conditional requests share MovieInfoETags. This covers what is its own: the routes, the handler's
+// validation and parameter parsing, and the FunctionalErrorHandler mappings.
+@WebFluxTest(controllers = MoviesInfoController.class, properties = "movieinfo.web.stack=functional")
+@Import({MoviesInfoRouter.class, MoviesInfoHandler.class, FunctionalErrorHandler.class, SignalTraceConfiguration.class})
+@AutoConfigureWebTestClient
+public class MoviesInfoRouterUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @MockBean
+    private MoviesInfoService moviesInfoService;
+
+    private static String MOVIES_INFO_URL = "/v1/movieinfos";
+
+    private static final MovieInfo MOVIE_INFO = new MovieInfo("abc", "Batman Begins",
+            2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"), 3L);
+
+    // method, uri, Accept, body, the service call the route ends in and what it returns
+    static Stream<Arguments> routes() {
+        var page = Mono.just(new MovieInfoPage(List.of(MOVIE_INFO), null));
+        return Stream.of(
+                request(HttpMethod.GET, "", null, null, Flux.just(MOVIE_INFO),
+                        service -> service.getAllMoviesInfo(null)),
+                request(HttpMethod.GET, "", MediaType.APPLICATION_NDJSON, null, Flux.just(MOVIE_INFO),
+                        service -> service.streamAllMoviesInfo(null)),
+                request(HttpMethod.GET, "?limit=1&after=abc", null, null, page,
+                        service -> service.getMoviesInfoPage("abc", 1, null)),
+                request(HttpMethod.GET, "?year=2005", null, null, page,
+                        service -> service.getMoviesInfoByYear(2005, null, 100, null)),
+                request(HttpMethod.GET, "?fromYear=2005&toYear=2012&limit=5", null, null, page,
+                        service -> service.getMoviesInfoByYearRange(2005, 2012, null, 5, null)),
+                request(HttpMethod.GET, "?fromYear=2000&limit=10", null, null, page,
+                        service -> service.getMoviesInfoByYearRange(2000, null, null, 10, null)),
+                request(HttpMethod.GET, "?toYear=2000", null, null, page,
+                        service -> service.getMoviesInfoByYearRange(null, 2000, null, 100, null)),
+                request(HttpMethod.GET, "?namePrefix=Bat", null, null, page,
+                        service -> service.getMoviesInfoByNamePrefix("Bat", null, 100, null)),
+                request(HttpMethod.GET, "/search?q=bale&page=1", null, null, Flux.just(MOVIE_INFO),
+                        service -> service.searchMoviesInfo("bale", 1, 20, null)),
+                request(HttpMethod.GET, "/stream", MediaType.APPLICATION_NDJSON, null, Flux.empty(),
+                        MoviesInfoService::streamMovieInfoEvents),
+                request(HttpMethod.GET, "/abc", null, null, Mono.just(MOVIE_INFO),
+                        service -> service.getMovieInfoById("abc", null)),
+                request(HttpMethod.POST, "", null, MOVIE_INFO, Mono.just(MOVIE_INFO),
+                        service -> service.addMovieInfo(isA(MovieInfo.class))),
+                request(HttpMethod.PUT, "/abc", null, MOVIE_INFO, Mono.just(MOVIE_INFO),
+                        service -> service.updateMovieInfo(isA(MovieInfo.class), eq("abc"))),
+                request(HttpMethod.PATCH, "/abc", null, MOVIE_INFO, Mono.just(MOVIE_INFO),
+                        service -> service.patchMovieInfo(isA(MovieInfo.class), eq("abc"))),
+                request(HttpMethod.DELETE, "/abc", null, null, Mono.empty(),
+                        service -> service.deleteMovieInfo("abc")));
+    }
+
+    private static Arguments request(HttpMethod method, String uri, MediaType accept, MovieInfo body,
+                                   Object returned, Consumer<MoviesInfoService> call) {
+        return Arguments.of(method, uri, accept, body, returned, call);
+    }
+
+    @ParameterizedTest(name = "{0} /v1/movieinfos{1} {2}")
+    @MethodSource("routes")
+    void routesToService(HttpMethod method, String uri, MediaType accept, MovieInfo body,
+               Object returned, Consumer<MoviesInfoService> call) {
+        // when
+        call.accept(doReturn(returned).when(moviesInfoService));
+
+        // then
+        var request = webTestClient
+                .method(method)
+                .uri(MOVIES_INFO_URL + uri);
+        if (accept != null) {
+            request.accept(accept);
+        }
+        if (body != null) {
+            request.bodyValue(body);
+        }
+        request.exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+        call.accept(verify(moviesInfoService));
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.reactivespring.controllers.MoviesInfoControllerUnitTest#filterCombinations")
+    void getAllMovies_filterCombination(String query) {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + query)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("pass only one of year, fromYear/toYear and namePrefix");
+        verifyNoInteractions(moviesInfoService);
+    }
+
+    @Test
+    void annotatedStackIsNotRegistered() {
+        assertTrue(applicationContext.getBeansOfType(MoviesInfoController.class).isEmpty());
+    }
+
+    @Test
+    void addMovieInfo_validation() {
+        // given
+        var movieInfo = new MovieInfo("mockId", "",
+                -2005, List.of(""), LocalDate.parse("2005-06-15"));
+
+        // then
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfo.cast must be present,movieInfo.name must be present,movieInfo.year must be present and positive");
+        verifyNoInteractions(moviesInfoService);
+    }
+
+    @Test
+    void addMovieInfo_duplicate() {
+        // when
+        when(moviesInfoService.addMovieInfo(isA(MovieInfo.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        // then
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL)
+                .bodyValue(MOVIE_INFO)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class)
+                .isEqualTo("movieInfo already exists");
+    }
+
+    @Test
+    void getMoviesInfoByNamePrefix_invalidCursor() {
+        // when
+        when(moviesInfoService.getMoviesInfoByNamePrefix("Dark", "bad", 100, null))
+                .thenReturn(Mono.error(new MovieInfoDataException("invalid cursor")));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?namePrefix=Dark&after=bad")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("invalid cursor");
+    }
+
+    @Test
+    void getMoviesInfoPage_invalidLimit() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=ten")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getMovieInfoById_unknownFields() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}?fields=name,rating,budget", "abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("unknown fields budget,rating");
+    }
+
+    @Test
+    void streamMovieInfoEvents_tooManySubscribers() {
+        // when
+        when(moviesInfoService.streamMovieInfoEvents())
+                .thenReturn(Flux.error(new MovieInfoStreamLimitException("too many movie info event subscribers")));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void getMovieInfoById_notModified() {
+        // when
+        when(moviesInfoService.getMovieInfoVersion("abc")).thenReturn(Mono.just(2L));
+        when(moviesInfoService.getMovieInfoById("abc", null)).thenReturn(Mono.error(new IllegalStateException("full document fetched")));
+
+        // then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"2\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"2\"");
+    }
+
+    @Test
+    void updateMovieInfo_eTag() {
+        // when
+        when(moviesInfoService.updateMovieInfo(isA(MovieInfo.class), eq("abc"), eq(2L))).thenReturn(Mono.just(MOVIE_INFO));
+
+        // then
+        webTestClient
+                .put()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .bodyValue(MOVIE_INFO)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Batman Begins");
+    }
+
+    @Test
+    void updateMovieInfo_preconditionFailed() {
+        // when
+        when(moviesInfoService.updateMovieInfo(isA(MovieInfo.class), eq("abc"), eq(1L))).thenReturn(Mono.empty());
+
+        // then
+        webTestClient
+                .put()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .bodyValue(MOVIE_INFO)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    void updateMovieInfo_validation() {
+        // given
+        var movieInfo = new MovieInfo("mockId", "",
+                -2005, List.of(""), LocalDate.parse("2005-06-15"));
+
+        // then
+        webTestClient
+                .put()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfo.cast must be present,movieInfo.name must be present,movieInfo.year must be present and positive");
+        verifyNoInteractions(moviesInfoService);
+    }
+
+    @Test
+    void deleteMovieInfo_invalidIfMatch() {
+        webTestClient
+                .delete()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "W/\"1\"")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        verifyNoInteractions(moviesInfoService);
+    }
+}
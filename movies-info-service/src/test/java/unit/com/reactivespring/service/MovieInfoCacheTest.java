@@ -0,0 +1,60 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MovieInfoCacheTest {
+
+    // Room for 2 movie infos and 2 tombstones
+    private final MovieInfoCache movieInfoCache = new MovieInfoCache(2, Duration.ofMinutes(5), Duration.ofMinutes(1),
+            new SimpleMeterRegistry());
+
+    @Test
+    void put_readThatStartedBeforeTheDeleteIsNotCached() {
+        var ticket = movieInfoCache.ticket();
+        movieInfoCache.invalidate("abc");
+
+        movieInfoCache.put(movieInfo("abc"), ticket);
+
+        assertNull(movieInfoCache.get("abc"));
+    }
+
+    @Test
+    void put_moreDeletesThanTombstonesStillFenceAStaleRead() {
+        var ticket = movieInfoCache.ticket();
+        movieInfoCache.invalidate("abc");
+        // Far more than max-size deletes, the tombstone of abc is evicted or never admitted
+        for (var i = 0; i < 100; i++) {
+            movieInfoCache.invalidate("id" + i);
+        }
+
+        movieInfoCache.put(movieInfo("abc"), ticket);
+
+        assertNull(movieInfoCache.get("abc"));
+    }
+
+    @Test
+    void put_readThatStartedAfterTheDeletesIsCached() {
+        for (var i = 0; i < 100; i++) {
+            movieInfoCache.invalidate("id" + i);
+        }
+        var movieInfo = movieInfo("abc");
+
+        movieInfoCache.put(movieInfo, movieInfoCache.ticket());
+
+        assertEquals(movieInfo, movieInfoCache.get("abc"));
+    }
+
+    private static MovieInfo movieInfo(String movieInfoId) {
+        return new MovieInfo(movieInfoId, "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"),
+                LocalDate.parse("2012-07-20"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.MovieInfoStreamLimitException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The overflow policies and heartbeats themselves are covered by EventFanoutTest
+class MovieInfoEventPublisherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MovieInfoEventPublisher publisher(String overflow, int maxSubscribers) {
+        return new MovieInfoEventPublisher(2, 2, overflow, Duration.ofSeconds(15), maxSubscribers, meterRegistry);
+    }
+
+    @Test
+    void events_replaysTheLastEventsThenLiveOnes() {
+        var publisher = publisher("drop", 10);
+        publisher.created(movieInfo("a"));
+        publisher.created(movieInfo("b"));
+        publisher.created(movieInfo("c"));
+
+        StepVerifier.create(publisher.events().map(MovieInfoEvent::getSequence).take(3))
+                .expectNext(2L, 3L)
+                .then(() -> publisher.deleted("a"))
+                .expectNext(4L)
+                .verifyComplete();
+    }
+
+    @Test
+    void events_countsTheEventsDroppedForASlowSubscriber() {
+        var publisher = publisher("drop", 10);
+
+        StepVerifier.create(publisher.events().map(MovieInfoEvent::getSequence), 0)
+                .then(() -> List.of("a", "b", "c", "d").forEach(id -> publisher.created(movieInfo(id))))
+                .thenRequest(3)
+                .expectNext(1L, 2L)
+                .then(() -> publisher.deleted("a"))
+                .expectNext(5L)
+                .thenCancel()
+                .verify();
+        assertEquals(2.0, meterRegistry.counter("movieinfo.events.dropped").count());
+    }
+
+    @Test
+    void events_disconnectedSubscriberIsNoLongerCounted() {
+        var publisher = publisher("disconnect", 10);
+
+        StepVerifier.create(publisher.events(), 0)
+                .then(() -> List.of("a", "b", "c").forEach(id -> publisher.created(movieInfo(id))))
+                // The buffered events are still delivered, then the overflow error
+                .thenRequest(2)
+                .expectNextCount(2)
+                .verifyError();
+        assertEquals(0.0, meterRegistry.get("movieinfo.events.subscribers").gauge().value());
+    }
+
+    @Test
+    void events_rejectsSubscribersAboveTheCap() {
+        var publisher = publisher("drop", 1);
+
+        StepVerifier.create(publisher.events())
+                .then(() -> StepVerifier.create(publisher.events())
+                        .verifyError(MovieInfoStreamLimitException.class))
+                .thenCancel()
+                .verify();
+        // The slot is free again once the first subscriber is gone
+        StepVerifier.create(publisher.events())
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void serverSentEvents_sendsHeartbeatsBetweenEvents() {
+        var publisher = publisher("drop", 10);
+
+        StepVerifier.withVirtualTime(publisher::serverSentEvents)
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(15))
+                .assertNext(sse -> assertEquals("heartbeat", sse.comment()))
+                .then(() -> publisher.deleted("a"))
+                .assertNext(sse -> assertEquals(List.of("1", "DELETED", "a"),
+                        List.of(sse.id(), sse.event(), sse.data().getMovieInfoId())))
+                .thenCancel()
+                .verify();
+    }
+
+    private static MovieInfo movieInfo(String movieInfoId) {
+        return new MovieInfo(movieInfoId, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoSearchIndexTest {
+
+    private MovieInfoRepository movieInfoRepository;
+
+    private MovieInfoSearchIndex movieInfoSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        movieInfoRepository = mock(MovieInfoRepository.class);
+        movieInfoSearchIndex = new MovieInfoSearchIndex(movieInfoRepository);
+        movieInfoSearchIndex.index(movieInfo("a", "Batman Begins", 0L, "Christian Bale", "Michael Cane"));
+        movieInfoSearchIndex.index(movieInfo("b", "The Dark Knight", 0L, "Christian Bale", "HeathLedger"));
+        movieInfoSearchIndex.index(movieInfo("c", "Dark Knight Rises", 0L, "Christian Bale", "Tom Hardy"));
+    }
+
+    @Test
+    void search_nameMatchesRankAboveCastMatches() {
+        movieInfoSearchIndex.index(movieInfo("d", "The Prestige", 0L, "Christian Bale", "Hugh Jackman"));
+
+        assertEquals(List.of("d", "a", "b", "c"), movieInfoSearchIndex.search("prestige bale", 0, 10));
+        assertEquals(List.of("b", "c"), movieInfoSearchIndex.search("DARK knight", 0, 10));
+        assertEquals(List.of("a"), movieInfoSearchIndex.search("michael-cane", 0, 10));
+        assertEquals(List.of(), movieInfoSearchIndex.search("joker", 0, 10));
+        assertEquals(List.of(), movieInfoSearchIndex.search(" ,. ", 0, 10));
+    }
+
+    @Test
+    void search_paging() {
+        assertEquals(List.of("a", "b"), movieInfoSearchIndex.search("bale", 0, 2));
+        assertEquals(List.of("c"), movieInfoSearchIndex.search("bale", 1, 2));
+        assertEquals(List.of(), movieInfoSearchIndex.search("bale", 2, 2));
+    }
+
+    @Test
+    void index_updateReplacesTermsAndIgnoresOlderVersions() {
+        movieInfoSearchIndex.index(movieInfo("a", "Batman Returns", 1L, "Michael Keaton"));
+        movieInfoSearchIndex.index(movieInfo("a", "Batman Begins", 0L, "Christian Bale"));
+
+        assertEquals(List.of(), movieInfoSearchIndex.search("begins", 0, 10));
+        assertEquals(List.of("a"), movieInfoSearchIndex.search("keaton", 0, 10));
+        assertEquals(List.of("b", "c"), movieInfoSearchIndex.search("bale", 0, 10));
+        assertEquals(3, movieInfoSearchIndex.size());
+    }
+
+    @Test
+    void remove_survivesCompaction() {
+        movieInfoSearchIndex.remove("b");
+        for (var i = 0; i < 2000; i++) {
+            movieInfoSearchIndex.index(movieInfo("a", "Batman Begins", (long) i, "Christian Bale"));
+        }
+
+        // Equal scores keep indexing order, "a" was indexed again after "c"
+        assertEquals(List.of("c", "a"), movieInfoSearchIndex.search("bale", 0, 10));
+        assertEquals(List.of("c"), movieInfoSearchIndex.search("hardy", 0, 10));
+        assertEquals(2, movieInfoSearchIndex.size());
+    }
+
+    @Test
+    void rebuild_replacesContent() {
+        when(movieInfoRepository.findAll()).thenReturn(Flux.just(movieInfo("x", "Inception", 0L, "Leonardo DiCaprio")));
+
+        assertEquals(1L, movieInfoSearchIndex.rebuild().block());
+        assertEquals(List.of(), movieInfoSearchIndex.search("bale", 0, 10));
+        assertEquals(List.of("x"), movieInfoSearchIndex.search("inception", 0, 10));
+    }
+
+    private static MovieInfo movieInfo(String movieInfoId, String name, Long version, String... cast) {
+        return new MovieInfo(movieInfoId, name, 2000, List.of(cast), LocalDate.parse("2000-01-01"), version);
+    }
+}
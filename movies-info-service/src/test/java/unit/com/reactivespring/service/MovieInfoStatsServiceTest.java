@@ -0,0 +1,59 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfoCount;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoStatsServiceTest {
+
+    private final MovieInfoRepository movieInfoRepository = mock(MovieInfoRepository.class);
+
+    private final MovieInfoStatsService movieInfoStatsService = new MovieInfoStatsService(movieInfoRepository, Duration.ofMinutes(1));
+
+    private final AtomicInteger aggregations = new AtomicInteger();
+
+    @Test
+    void countByYear_reusedUntilInvalidated() {
+        when(movieInfoRepository.countByYear()).thenReturn(Flux.defer(() -> {
+            aggregations.incrementAndGet();
+            return Flux.just(new MovieInfoCount<>(2005, 1), new MovieInfoCount<>(2008, 2));
+        }));
+
+        StepVerifier.create(movieInfoStatsService.countByYear())
+                .expectNext(new MovieInfoCount<>(2005, 1), new MovieInfoCount<>(2008, 2))
+                .verifyComplete();
+        StepVerifier.create(movieInfoStatsService.countByYear())
+                .expectNextCount(2)
+                .verifyComplete();
+        assertEquals(1, aggregations.get());
+
+        movieInfoStatsService.invalidate();
+
+        StepVerifier.create(movieInfoStatsService.countByYear())
+                .expectNextCount(2)
+                .verifyComplete();
+        assertEquals(2, aggregations.get());
+    }
+
+    @Test
+    void countByCastMember_failedAggregationIsNotKept() {
+        when(movieInfoRepository.countByCastMember()).thenReturn(
+                Flux.error(new IllegalStateException("mongo down")),
+                Flux.just(new MovieInfoCount<>("Christian Bale", 3)));
+
+        StepVerifier.create(movieInfoStatsService.countByCastMember())
+                .verifyError(IllegalStateException.class);
+        StepVerifier.create(movieInfoStatsService.countByCastMember())
+                .expectNext(new MovieInfoCount<>("Christian Bale", 3))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,82 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MovieInfoWriteCoalescerTest {
+
+    private final MovieInfoRepository movieInfoRepository = mock(MovieInfoRepository.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void insert_concurrentCallsShareOneInsertManyAndGetTheirOwnResult() {
+        var coalescer = new MovieInfoWriteCoalescer(movieInfoRepository, true, 3, Duration.ofSeconds(10), 4, meterRegistry);
+        when(movieInfoRepository.insertAllUnordered(anyList())).thenReturn(Flux.just(
+                new MovieInfoBulkResult(0, "a", MovieInfoBulkResult.Status.CREATED, null),
+                new MovieInfoBulkResult(1, "b", MovieInfoBulkResult.Status.FAILED, "E11000 duplicate key error collection: movieInfo"),
+                new MovieInfoBulkResult(2, "c", MovieInfoBulkResult.Status.CREATED, null)));
+        var a = movieInfo("a");
+        var b = movieInfo("b");
+        var c = movieInfo("c");
+
+        // The third insert fills the batch, no need to wait for the window
+        var inserts = Flux.merge(coalescer.insert(a).materialize(), coalescer.insert(b).materialize(), coalescer.insert(c).materialize())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(a, c), List.of(inserts.get(0).get(), inserts.get(2).get()));
+        assertEquals(DuplicateKeyException.class, inserts.get(1).getThrowable().getClass());
+        verify(movieInfoRepository, times(1)).insertAllUnordered(List.of(a, b, c));
+        assertEquals(3.0, meterRegistry.get("movieinfo.write-coalescing.batch-size").summary().totalAmount());
+    }
+
+    @Test
+    void insert_partialBatchIsFlushedAfterTheWindow() {
+        var coalescer = new MovieInfoWriteCoalescer(movieInfoRepository, true, 100, Duration.ofMillis(20), 4, meterRegistry);
+        var a = movieInfo("a");
+        when(movieInfoRepository.insertAllUnordered(List.of(a))).thenReturn(Flux.just(
+                new MovieInfoBulkResult(0, "a", MovieInfoBulkResult.Status.CREATED, null)));
+
+        StepVerifier.create(coalescer.insert(a))
+                .expectNext(a)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void insert_disabledSavesEachMovieInfo() {
+        var coalescer = new MovieInfoWriteCoalescer(movieInfoRepository, false, 100, Duration.ofMillis(5), 4, meterRegistry);
+        var a = movieInfo("a");
+        when(movieInfoRepository.save(a)).thenReturn(Mono.just(a));
+
+        StepVerifier.create(coalescer.insert(a))
+                .expectNext(a)
+                .verifyComplete();
+        verify(movieInfoRepository, never()).insertAllUnordered(anyList());
+    }
+
+    private static MovieInfo movieInfo(String movieInfoId) {
+        return new MovieInfo(movieInfoId, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+}
@@ -0,0 +1,351 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.ProjectedMovieInfo;
+import com.reactivespring.exception.MovieInfoDataException;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MoviesInfoServiceTest {
+
+    private MovieInfoRepository movieInfoRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MovieInfoSearchIndex movieInfoSearchIndex;
+
+    private MovieInfoEventPublisher movieInfoEventPublisher;
+
+    private MoviesInfoService moviesInfoService;
+
+    private final MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+            2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @BeforeEach
+    void setUp() {
+        movieInfoRepository = mock(MovieInfoRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        var movieInfoCache = new MovieInfoCache(100, Duration.ofMinutes(5), Duration.ofMinutes(1), meterRegistry);
+        movieInfoSearchIndex = new MovieInfoSearchIndex(movieInfoRepository);
+        movieInfoEventPublisher = new MovieInfoEventPublisher(100, 256, "drop", Duration.ofSeconds(15), 10, meterRegistry);
+        var movieInfoWriteCoalescer = new MovieInfoWriteCoalescer(movieInfoRepository, false, 100, Duration.ofMillis(5), 4, meterRegistry);
+        moviesInfoService = new MoviesInfoService(movieInfoRepository, movieInfoCache, movieInfoSearchIndex, movieInfoEventPublisher,
+                movieInfoWriteCoalescer, new MovieInfoStatsService(movieInfoRepository, Duration.ofSeconds(30)),
+                Validation.buildDefaultValidatorFactory().getValidator(), meterRegistry,
+                100, 100, 500, Duration.ofMillis(100), 2);
+    }
+
+    @Test
+    void getMovieInfoById_cacheHitSkipsRepository() {
+        when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(movieInfo));
+
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc"))
+                .expectNext(movieInfo)
+                .verifyComplete();
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc"))
+                .expectNext(movieInfo)
+                .verifyComplete();
+
+        verify(movieInfoRepository, times(1)).findById("abc");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void getMovieInfoById_concurrentMissesShareOneFindById() {
+        var found = Sinks.<MovieInfo>one();
+        when(movieInfoRepository.findById("abc")).thenReturn(found.asMono());
+
+        var first = StepVerifier.create(moviesInfoService.getMovieInfoById("abc")).expectNext(movieInfo).expectComplete().verifyLater();
+        var second = StepVerifier.create(moviesInfoService.getMovieInfoById("abc")).expectNext(movieInfo).expectComplete().verifyLater();
+        found.tryEmitValue(movieInfo);
+        first.verify();
+        second.verify();
+
+        verify(movieInfoRepository, times(1)).findById("abc");
+        assertEquals(1.0, meterRegistry.get("movieinfo.singleflight.executions").counter().count());
+    }
+
+    @Test
+    void getMovieInfoById_notFoundIsNotCached() {
+        when(movieInfoRepository.findById("def")).thenReturn(Mono.empty());
+
+        StepVerifier.create(moviesInfoService.getMovieInfoById("def")).verifyComplete();
+        StepVerifier.create(moviesInfoService.getMovieInfoById("def")).verifyComplete();
+
+        verify(movieInfoRepository, times(2)).findById("def");
+    }
+
+    @Test
+    void updateMovieInfo_refreshesCache() {
+        var updated = new MovieInfo("abc", "Dark Knight Rises2",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(movieInfo));
+        when(movieInfoRepository.findAndSet(eq("abc"), isNull(), anyMap())).thenReturn(Mono.just(updated));
+
+        moviesInfoService.getMovieInfoById("abc").block();
+        moviesInfoService.updateMovieInfo(updated, "abc").block();
+
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc"))
+                .assertNext(movieInfo -> assertEquals("Dark Knight Rises2", movieInfo.getName()))
+                .verifyComplete();
+        verify(movieInfoRepository, never()).save(isA(MovieInfo.class));
+    }
+
+    @Test
+    void patchMovieInfo_setsOnlyPresentFields() {
+        var patch = new MovieInfo(null, null, 2013, null, null);
+        when(movieInfoRepository.findAndSet(eq("abc"), isNull(), eq(Map.of("year", 2013)))).thenReturn(Mono.just(movieInfo));
+
+        StepVerifier.create(moviesInfoService.patchMovieInfo(patch, "abc"))
+                .expectNext(movieInfo)
+                .verifyComplete();
+    }
+
+    @Test
+    void patchMovieInfo_invalidFields() {
+        var patch = new MovieInfo(null, "", -2013, List.of(""), null);
+
+        StepVerifier.create(moviesInfoService.patchMovieInfo(patch, "abc"))
+                .expectErrorMatches(ex -> ex instanceof MovieInfoDataException
+                        && ex.getMessage().equals("movieInfo.cast must be present,movieInfo.name must be present,movieInfo.year must be present and positive"))
+                .verify();
+        verify(movieInfoRepository, never()).findAndSet(anyString(), any(), anyMap());
+    }
+
+    @Test
+    void getMovieInfoVersion_usesCacheThenProjection() {
+        var versioned = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 3L);
+        when(movieInfoRepository.findVersionById("abc")).thenReturn(Mono.just(versioned));
+        when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(versioned));
+
+        StepVerifier.create(moviesInfoService.getMovieInfoVersion("abc"))
+                .expectNext(3L)
+                .verifyComplete();
+        moviesInfoService.getMovieInfoById("abc").block();
+        StepVerifier.create(moviesInfoService.getMovieInfoVersion("abc"))
+                .expectNext(3L)
+                .verifyComplete();
+
+        verify(movieInfoRepository, times(1)).findVersionById("abc");
+    }
+
+    @Test
+    void updateMovieInfo_olderVersionDoesNotReplaceCachedEntry() {
+        var newer = new MovieInfo("abc", "Dark Knight Rises3",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 3L);
+        var older = new MovieInfo("abc", "Dark Knight Rises2",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 2L);
+        when(movieInfoRepository.findAndSet(eq("abc"), isNull(), anyMap())).thenReturn(Mono.just(newer), Mono.just(older));
+
+        moviesInfoService.updateMovieInfo(newer, "abc").block();
+        moviesInfoService.updateMovieInfo(older, "abc").block();
+
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc"))
+                .assertNext(movieInfo -> assertEquals(3L, movieInfo.getVersion()))
+                .verifyComplete();
+        verify(movieInfoRepository, never()).findById("abc");
+    }
+
+    @Test
+    void getMoviesInfoByYearRange_cursorCarriesYearAndId() {
+        var first = new MovieInfo("abc", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        var second = new MovieInfo("abd", "The Dark Knight",
+                2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"));
+        when(movieInfoRepository.findByYearBetween(2000, 2010, null, null, 2, null)).thenReturn(Flux.just(first, second));
+        when(movieInfoRepository.findByYearBetween(2000, 2010, 2005, "abc", 2, null)).thenReturn(Flux.just(second));
+
+        var page = moviesInfoService.getMoviesInfoByYearRange(2000, 2010, null, 1, null).block();
+        assertEquals(List.of(first), page.getMovieInfos());
+
+        StepVerifier.create(moviesInfoService.getMoviesInfoByYearRange(2000, 2010, page.getNextCursor(), 1, null))
+                .assertNext(nextPage -> {
+                    assertEquals(List.of(second), nextPage.getMovieInfos());
+                    assertEquals(null, nextPage.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getMoviesInfoByNamePrefix_readsTheSortKeyButReturnsOnlyTheFields() {
+        var second = new MovieInfo("abd", "Dark Knight", 2008, null, null, 0L);
+        when(movieInfoRepository.findByNamePrefix("Dark", null, null, 2, Set.of("year", "name")))
+                .thenReturn(Flux.just(new MovieInfo("abc", "Dark", 2012, null, null, 0L), second));
+
+        StepVerifier.create(moviesInfoService.getMoviesInfoByNamePrefix("Dark", null, 1, Set.of("year")))
+                .assertNext(page -> {
+                    assertEquals(List.of(new MovieInfo("abc", null, 2012, null, null, 0L)), page.getMovieInfos());
+                    assertEquals("RGFyawphYmM", page.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getMovieInfoById_fieldsOfACachedMovieInfo() {
+        when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(movieInfo));
+        moviesInfoService.getMovieInfoById("abc").block();
+
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc", Set.of("name")))
+                .expectNext(new MovieInfo("abc", "Dark Knight Rises", null, null, null))
+                .verifyComplete();
+        verify(movieInfoRepository, never()).findById(anyString(), any());
+    }
+
+    @Test
+    void getMovieInfoById_fieldsReadFromMongoAreProjected() {
+        when(movieInfoRepository.findById("abc", Set.of("name")))
+                .thenReturn(Mono.just(new MovieInfo("abc", "Dark Knight Rises", null, null, null, 0L)));
+
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc", Set.of("name")))
+                .assertNext(projected -> assertTrue(projected instanceof ProjectedMovieInfo))
+                .verifyComplete();
+    }
+
+    @Test
+    void getMoviesInfoByNamePrefix_invalidCursor() {
+        StepVerifier.create(moviesInfoService.getMoviesInfoByNamePrefix("Dark", "not a cursor", 1, null))
+                .expectError(MovieInfoDataException.class)
+                .verify();
+    }
+
+    @Test
+    void deleteMovieInfo_invalidatesCache() {
+        when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(movieInfo), Mono.empty());
+        when(movieInfoRepository.deleteByMovieInfoId("abc")).thenReturn(Mono.just(1L));
+
+        moviesInfoService.getMovieInfoById("abc").block();
+        moviesInfoService.deleteMovieInfo("abc").block();
+
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc"))
+                .verifyComplete();
+    }
+
+    @Test
+    void deleteMovieInfo_readInFlightDoesNotRefillCache() {
+        var slowRead = Sinks.<MovieInfo>one();
+        when(movieInfoRepository.findById("abc")).thenReturn(slowRead.asMono(), Mono.empty());
+        when(movieInfoRepository.deleteByMovieInfoId("abc")).thenReturn(Mono.just(1L));
+
+        // The read has reached Mongo before the delete, its result arrives after it
+        var read = moviesInfoService.getMovieInfoById("abc").toFuture();
+        moviesInfoService.deleteMovieInfo("abc").block();
+        slowRead.tryEmitValue(movieInfo);
+
+        assertEquals(movieInfo, read.join());
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc"))
+                .verifyComplete();
+        verify(movieInfoRepository, times(2)).findById("abc");
+    }
+
+    @Test
+    void deleteMovieInfo_laterCallersDoNotJoinTheStaleFlight() {
+        var slowRead = Sinks.<MovieInfo>one();
+        when(movieInfoRepository.findById("abc")).thenReturn(slowRead.asMono(), Mono.empty());
+        when(movieInfoRepository.deleteByMovieInfoId("abc")).thenReturn(Mono.just(1L));
+
+        var joined = moviesInfoService.getMovieInfoById("abc").toFuture();
+        moviesInfoService.deleteMovieInfo("abc").block();
+        // Starts a flight of its own instead of sharing the one that read the deleted movie info
+        var afterDelete = moviesInfoService.getMovieInfoById("abc").toFuture();
+        slowRead.tryEmitValue(movieInfo);
+
+        assertEquals(movieInfo, joined.join());
+        assertNull(afterDelete.join());
+        StepVerifier.create(moviesInfoService.getMovieInfoById("abc"))
+                .verifyComplete();
+    }
+
+    @Test
+    void searchMoviesInfo_keepsRankOrderAndFollowsWrites() {
+        var batmanBegins = new MovieInfo("def", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        movieInfoSearchIndex.index(batmanBegins);
+        when(movieInfoRepository.save(isA(MovieInfo.class))).thenReturn(Mono.just(movieInfo));
+        moviesInfoService.addMovieInfo(movieInfo).block();
+        // Mongo returns the documents in its own order
+        when(movieInfoRepository.findAllById(List.of("def", "abc"))).thenReturn(Flux.just(movieInfo, batmanBegins));
+
+        StepVerifier.create(moviesInfoService.searchMoviesInfo("batman bale", 0, 20, null))
+                .expectNext(batmanBegins, movieInfo)
+                .verifyComplete();
+
+        when(movieInfoRepository.deleteByMovieInfoId("def")).thenReturn(Mono.just(1L));
+        moviesInfoService.deleteMovieInfo("def").block();
+
+        assertEquals(List.of("abc"), movieInfoSearchIndex.search("batman bale", 0, 20));
+    }
+
+    @Test
+    void streamMovieInfoEvents_publishesSuccessfulWrites() {
+        when(movieInfoRepository.save(isA(MovieInfo.class))).thenReturn(Mono.just(movieInfo));
+        when(movieInfoRepository.findAndSet(eq("abc"), isNull(), anyMap())).thenReturn(Mono.just(movieInfo));
+        when(movieInfoRepository.deleteByMovieInfoId("abc")).thenReturn(Mono.just(1L));
+        when(movieInfoRepository.deleteByMovieInfoId("def")).thenReturn(Mono.just(0L));
+
+        moviesInfoService.addMovieInfo(movieInfo).block();
+        moviesInfoService.updateMovieInfo(movieInfo, "abc").block();
+        moviesInfoService.deleteMovieInfo("def").block();
+        moviesInfoService.deleteMovieInfo("abc").block();
+
+        // Replayed to a subscriber arriving after the writes, nothing for the missing "def"
+        StepVerifier.create(moviesInfoService.streamMovieInfoEvents().take(3))
+                .assertNext(event -> assertEquals(List.of(1L, MovieInfoEvent.Type.CREATED, "abc"),
+                        List.of(event.getSequence(), event.getType(), event.getMovieInfoId())))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.UPDATED, event.getType()))
+                .assertNext(event -> assertEquals(List.of(3L, MovieInfoEvent.Type.DELETED, "abc"),
+                        List.of(event.getSequence(), event.getType(), event.getMovieInfoId())))
+                .verifyComplete();
+    }
+
+    @Test
+    void getMoviesInfoByIds_cacheHitsThenOneQueryForTheMisses() {
+        var batmanBegins = new MovieInfo("def", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(movieInfo));
+        moviesInfoService.getMovieInfoById("abc").block();
+        when(movieInfoRepository.findAllById(List.of("ghi", "def"))).thenReturn(Flux.just(batmanBegins));
+
+        StepVerifier.create(moviesInfoService.getMoviesInfoByIds(List.of("ghi", "abc", "def", "abc"), null))
+                .expectNext(new MovieInfoBatchResult("abc", MovieInfoBatchResult.Status.FOUND, movieInfo))
+                .expectNext(new MovieInfoBatchResult("def", MovieInfoBatchResult.Status.FOUND, batmanBegins))
+                .expectNext(new MovieInfoBatchResult("ghi", MovieInfoBatchResult.Status.MISSING, null))
+                .verifyComplete();
+        // The documents read from Mongo are cached as well
+        StepVerifier.create(moviesInfoService.getMovieInfoById("def"))
+                .expectNext(batmanBegins)
+                .verifyComplete();
+        verify(movieInfoRepository, never()).findById("def");
+    }
+}
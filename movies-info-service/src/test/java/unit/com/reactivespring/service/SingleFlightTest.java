@@ -0,0 +1,77 @@
+package com.reactivespring.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test", meterRegistry);
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void execute_concurrentCallersShareOneExecution() {
+        var result = Sinks.<String>one();
+
+        var first = StepVerifier.create(singleFlight.execute("abc", () -> execute(result))).expectNext("value").expectComplete().verifyLater();
+        var second = StepVerifier.create(singleFlight.execute("abc", () -> execute(result))).expectNext("value").expectComplete().verifyLater();
+        var other = singleFlight.execute("def", () -> execute(Sinks.one())).subscribe();
+        result.tryEmitValue("value");
+        other.dispose();
+
+        first.verify();
+        second.verify();
+        assertEquals(2, executions.get());
+        assertEquals(0, singleFlight.inFlight());
+        assertEquals(3.0, meterRegistry.get("movieinfo.singleflight.requests").tag("name", "test").counter().count());
+        assertEquals(2.0, meterRegistry.get("movieinfo.singleflight.executions").tag("name", "test").counter().count());
+    }
+
+    @Test
+    void execute_errorIsSharedAndTheNextCallRunsAgain() {
+        var result = Sinks.<String>one();
+
+        var first = StepVerifier.create(singleFlight.execute("abc", () -> execute(result))).expectError(IllegalStateException.class).verifyLater();
+        var second = StepVerifier.create(singleFlight.execute("abc", () -> execute(result))).expectError(IllegalStateException.class).verifyLater();
+        result.tryEmitError(new IllegalStateException("mongo down"));
+        first.verify();
+        second.verify();
+
+        StepVerifier.create(singleFlight.execute("abc", () -> Mono.just("value")))
+                .expectNext("value")
+                .verifyComplete();
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void execute_cancelledByAllCallersCancelsTheExecution() {
+        var cancelled = new AtomicBoolean();
+        var result = Sinks.<String>one();
+
+        var first = singleFlight.execute("abc", () -> execute(result).doOnCancel(() -> cancelled.set(true))).subscribe();
+        var second = singleFlight.execute("abc", () -> execute(result)).subscribe();
+
+        first.dispose();
+        assertEquals(1, singleFlight.inFlight());
+        second.dispose();
+        assertTrue(cancelled.get());
+        assertEquals(0, singleFlight.inFlight());
+        assertEquals(1, executions.get());
+    }
+
+    private Mono<String> execute(Sinks.One<String> result) {
+        executions.incrementAndGet();
+        return result.asMono();
+    }
+}
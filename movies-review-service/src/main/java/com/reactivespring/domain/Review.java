@@ -5,20 +5,34 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+// GET /v1/reviews?movieInfoId= is an equality match on movieInfoId sorted by _id, both come from this index,
+// read backwards it also serves the pages sorted by recency
+@CompoundIndex(name = "movieInfoId_id", def = "{ 'movieInfoId': 1, '_id': 1 }")
+// The lowest and highest rating of a movie, read when the ReviewSummary min or max is deleted,
+// and the pages sorted by rating and the top rated reviews
+@CompoundIndex(name = "movieInfoId_rating_id", def = "{ 'movieInfoId': 1, 'rating': 1, '_id': 1 }")
 public class Review {
 
+    // The ReviewSummary histogram has one bucket per whole point up to this one
+    public static final long MAX_RATING = 10;
+
     @Id
     private String reviewId;
+    @NotNull(message = "review.movieInfoId : must not be null")
     private Long movieInfoId;
     private String comment;
-    //@Min(value = 0L, message = "rating.negative : please pass a non-negative value")
+    @Min(value = 0L, message = "rating.negative : please pass a non-negative value")
+    @Max(value = MAX_RATING, message = "rating.tooHigh : please pass a value up to 10")
     private Double rating;
 }
@@ -0,0 +1,13 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+// One NDJSON line of a bulk request, the type property tells a client which of the two it is reading
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = ReviewBulkResult.class, name = "result"),
+        @JsonSubTypes.Type(value = ReviewBulkProgress.class, name = "progress")
+})
+public interface ReviewBulkLine {
+}
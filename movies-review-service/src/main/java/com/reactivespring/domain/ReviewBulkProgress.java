@@ -0,0 +1,23 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Written between the ReviewBulkResult lines of a bulk request while it runs, and once more at the end
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewBulkProgress implements ReviewBulkLine {
+    // reviews with a result so far, whatever their status
+    private long processed;
+    private long created;
+    private long updated;
+    private long duplicate;
+    private long invalid;
+    private long failed;
+    private long elapsedMillis;
+    // processed reviews per second since the request started
+    private double throughput;
+    private boolean done;
+}
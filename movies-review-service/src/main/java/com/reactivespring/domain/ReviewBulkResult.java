@@ -0,0 +1,21 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewBulkResult implements ReviewBulkLine {
+
+    public enum Status {
+        CREATED, UPDATED, DUPLICATE, INVALID, FAILED
+    }
+
+    // position of the review in the request stream
+    private long index;
+    private String reviewId;
+    private Status status;
+    private String error;
+}
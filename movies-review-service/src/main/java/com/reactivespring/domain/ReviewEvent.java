@@ -0,0 +1,26 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    // Increases by one per published event, clients can spot gaps left by a dropping subscription
+    private long sequence;
+    private Type type;
+    private String reviewId;
+    private Long movieInfoId;
+    // The review as written, the removed one for DELETED
+    private Review review;
+    private Instant timestamp;
+}
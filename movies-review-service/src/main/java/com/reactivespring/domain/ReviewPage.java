@@ -0,0 +1,16 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewPage {
+    private List<Review> reviews;
+    // Pass as "after" with the same sort for the next page, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,11 @@
+package com.reactivespring.domain;
+
+// Orders of a review page, each one is the order of an index of a movie's reviews
+public enum ReviewSort {
+    // reviewId ascending, the order of GET /v1/reviews?movieInfoId=
+    REVIEW_ID,
+    // Highest rating first, reviews without a rating are left out
+    RATING,
+    // Newest first, generated reviewIds are ObjectIds and those start with their creation time
+    RECENT
+}
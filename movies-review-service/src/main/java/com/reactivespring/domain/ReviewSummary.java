@@ -0,0 +1,35 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+// One document per movie, updated with $inc on every review write so reading it never touches the reviews.
+// Reviews without a rating are not counted.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewSummary {
+
+    @Id
+    private Long movieInfoId;
+    private long count;
+    private double sum;
+    private Double min;
+    private Double max;
+    // ratings per whole point, "8" counts the ratings from 8.0 up to but not including 9.0, "10" only counts 10.0
+    private Map<String, Long> histogram;
+
+    public static ReviewSummary empty(Long movieInfoId) {
+        return new ReviewSummary(movieInfoId, 0, 0, null, null, Map.of());
+    }
+
+    public Double getAverage() {
+        return count == 0 ? null : sum / count;
+    }
+}
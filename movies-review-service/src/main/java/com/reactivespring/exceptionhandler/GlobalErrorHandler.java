@@ -0,0 +1,54 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+// @ControllerAdvice does not apply to router functions, the review exceptions are mapped here.
+// Runs before Boot's error handler (order -1), anything else is passed on to it.
+@Component
+@Order(-2)
+@Slf4j
+public class GlobalErrorHandler implements WebExceptionHandler {
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        if (ex instanceof ReviewDataException) {
+            log.error("Exception caught in handleReviewDataException {}", ex.getMessage(), ex);
+            return write(exchange, HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+        if (ex instanceof ReviewNotFoundException) {
+            log.error("Exception caught in handleReviewNotFoundException {}", ex.getMessage());
+            return write(exchange, HttpStatus.NOT_FOUND, ex.getMessage(), ex);
+        }
+        // POST with the id of an existing review, the insert does not overwrite it
+        if (ex instanceof DuplicateKeyException) {
+            log.error("Exception caught in handleDuplicateKeyException {}", ex.getMessage(), ex);
+            return write(exchange, HttpStatus.CONFLICT, "review already exists", ex);
+        }
+        return Mono.error(ex);
+    }
+
+    private static Mono<Void> write(ServerWebExchange exchange, HttpStatus status, String message, Throwable ex) {
+        var response = exchange.getResponse();
+        // The NDJSON answer of /bulk and the review event streams commit the response with their first line,
+        // a later error cannot become a status anymore. Passed on, it ends the response by closing the connection.
+        if (response.isCommitted()) {
+            return Mono.error(ex);
+        }
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        var body = response.bufferFactory().wrap(message.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+}
@@ -0,0 +1,194 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkLine;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.domain.ReviewSort;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.service.ReviewService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class ReviewHandler {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<ReviewEvent>> SERVER_SENT_EVENTS =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final ReviewService reviewService;
+
+    private final Validator validator;
+
+    public ReviewHandler(ReviewService reviewService, Validator validator) {
+        this.reviewService = reviewService;
+        this.validator = validator;
+    }
+
+    public Mono<ServerResponse> addReview(ServerRequest request) {
+        return request.bodyToMono(Review.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .doOnNext(this::validate)
+                .flatMap(reviewService::addReview)
+                .flatMap(review -> ServerResponse.status(HttpStatus.CREATED).bodyValue(review));
+    }
+
+    // Partner exports, one review per line, answered line by line while the request is still being read
+    public Mono<ServerResponse> addReviews(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reviewService.addReviews(request.bodyToFlux(Review.class)), ReviewBulkLine.class);
+    }
+
+    public Mono<ServerResponse> getReviews(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(reviews(request), Review.class);
+    }
+
+    // Each review is written as it comes off the cursor
+    public Mono<ServerResponse> streamReviews(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reviews(request), Review.class);
+    }
+
+    // Keyset pagination of one movie's reviews, pass the nextCursor of a page as "after" to get the following page
+    public Mono<ServerResponse> getReviewPage(ServerRequest request) {
+        var movieInfoId = request.queryParam("movieInfoId")
+                .map(ReviewHandler::movieInfoId)
+                .orElseThrow(() -> new ReviewDataException("review.movieInfoId : must not be null"));
+        return reviewService.getReviewPage(movieInfoId, sort(request), request.queryParam("after").orElse(null),
+                        intParam(request, "limit", null))
+                .flatMap(page -> ServerResponse.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(page));
+    }
+
+    // The n highest rated reviews of the movie, 10 unless n is given
+    public Mono<ServerResponse> getTopReviews(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(reviewService.getTopReviews(movieInfoId(request.pathVariable("movieInfoId")), intParam(request, "n", 10)),
+                        Review.class);
+    }
+
+    // Reviews written from now on, ?movieInfoId=1,2 (or repeated) keeps only the events of those movies
+    public Mono<ServerResponse> streamReviewEvents(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(reviewService.streamReviewServerSentEvents(movieInfoIds(request)), SERVER_SENT_EVENTS);
+    }
+
+    public Mono<ServerResponse> streamReviewEventsAsNdjson(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reviewService.streamReviewEvents(movieInfoIds(request)), ReviewEvent.class);
+    }
+
+    // count 0 for a movie without rated reviews
+    public Mono<ServerResponse> getReviewSummary(ServerRequest request) {
+        return reviewService.getReviewSummary(movieInfoId(request.pathVariable("movieInfoId")))
+                .flatMap(summary -> ServerResponse.ok().bodyValue(summary));
+    }
+
+    public Mono<ServerResponse> updateReview(ServerRequest request) {
+        var reviewId = request.pathVariable("id");
+        return request.bodyToMono(Review.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .doOnNext(this::validate)
+                .flatMap(review -> reviewService.updateReview(reviewId, review))
+                .switchIfEmpty(Mono.error(() -> new ReviewNotFoundException("Review not found for the given Review id " + reviewId)))
+                .flatMap(review -> ServerResponse.ok().bodyValue(review));
+    }
+
+    public Mono<ServerResponse> deleteReview(ServerRequest request) {
+        var reviewId = request.pathVariable("id");
+        return reviewService.deleteReview(reviewId)
+                .switchIfEmpty(Mono.error(() -> new ReviewNotFoundException("Review not found for the given Review id " + reviewId)))
+                .then(ServerResponse.noContent().build());
+    }
+
+    // With movieInfoId only the reviews of that movie are read, through the movieInfoId_id index
+    private Flux<Review> reviews(ServerRequest request) {
+        return reviewService.getReviews(request.queryParam("movieInfoId")
+                .map(ReviewHandler::movieInfoId)
+                .orElse(null));
+    }
+
+    private static Set<Long> movieInfoIds(ServerRequest request) {
+        return request.queryParams().getOrDefault("movieInfoId", List.of()).stream()
+                .map(value -> value.split(","))
+                .flatMap(Arrays::stream)
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(ReviewHandler::movieInfoId)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static Long movieInfoId(String movieInfoId) {
+        try {
+            return Long.valueOf(movieInfoId);
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException("review.movieInfoId : must be a number");
+        }
+    }
+
+    private static ReviewSort sort(ServerRequest request) {
+        switch (request.queryParam("sort").orElse("reviewId")) {
+            case "reviewId":
+                return ReviewSort.REVIEW_ID;
+            case "rating":
+                return ReviewSort.RATING;
+            case "recent":
+                return ReviewSort.RECENT;
+            default:
+                throw new ReviewDataException("review.sort : must be one of reviewId, rating, recent");
+        }
+    }
+
+    private static int intParam(ServerRequest request, String name, Integer defaultValue) {
+        var value = request.queryParam(name);
+        if (value.isEmpty()) {
+            if (defaultValue == null) {
+                throw new ReviewDataException("review." + name + " : must not be null");
+            }
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.get());
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException("review." + name + " : must be a number");
+        }
+    }
+
+    private void validate(Review review) {
+        var violations = validator.validate(review);
+        if (!violations.isEmpty()) {
+            var error = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(","));
+            log.error("Error is {}", error);
+            throw new ReviewDataException(error);
+        }
+    }
+}
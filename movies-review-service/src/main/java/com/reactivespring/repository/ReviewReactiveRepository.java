@@ -0,0 +1,11 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String>, ReviewReactiveRepositoryCustom {
+
+    // Bounded by the movieInfoId_id index, no document of another movie is read
+    Flux<Review> findByMovieInfoIdOrderByReviewIdAsc(Long movieInfoId);
+}
@@ -0,0 +1,30 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewSort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    // Both return the review as it was before the write, so the summary gets the rating that was actually replaced
+    Mono<Review> updateReview(String reviewId, String comment, Double rating);
+
+    Mono<Review> removeReview(String reviewId);
+
+    // The lowest or highest rating of the movie, empty if none of its reviews has a rating
+    Mono<Double> findRatingBound(Long movieInfoId, boolean highest);
+
+    // Up to limit reviews of the movie that come after (afterRating, afterId) in the given order,
+    // afterRating is only read for RATING and a null afterId starts at the first review
+    Flux<Review> findPage(Long movieInfoId, ReviewSort sort, Double afterRating, String afterId, int limit);
+
+    // One unordered bulkWrite by reviewId, the result index is the position in reviews. stored holds the
+    // reviews as read before the write, a review that changed since then fails instead of being replaced,
+    // so an UPDATED result always replaced stored.get(reviewId). A review without a reviewId gets a new ObjectId.
+    Flux<ReviewBulkResult> upsertAllUnordered(List<Review> reviews, Map<String, Review> stored);
+}
@@ -0,0 +1,201 @@
+package com.reactivespring.repository;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewSort;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewReactiveRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<Review> updateReview(String reviewId, String comment, Double rating) {
+        var update = new Update().set("comment", comment).set("rating", rating);
+        return reactiveMongoTemplate.findAndModify(byId(reviewId), update,
+                FindAndModifyOptions.options().returnNew(false), Review.class);
+    }
+
+    @Override
+    public Mono<Review> removeReview(String reviewId) {
+        return reactiveMongoTemplate.findAndRemove(byId(reviewId), Review.class);
+    }
+
+    @Override
+    public Mono<Double> findRatingBound(Long movieInfoId, boolean highest) {
+        // First entry of the movie in the movieInfoId_rating_id index, from either end
+        var query = Query.query(Criteria.where("movieInfoId").is(movieInfoId).and("rating").ne(null))
+                .with(Sort.by(highest ? Sort.Direction.DESC : Sort.Direction.ASC, "rating"))
+                .limit(1);
+        query.fields().include("rating");
+        return reactiveMongoTemplate.findOne(query, Review.class)
+                .map(Review::getRating);
+    }
+
+    @Override
+    public Flux<Review> findPage(Long movieInfoId, ReviewSort sort, Double afterRating, String afterId, int limit) {
+        Supplier<Criteria> movie = () -> Criteria.where("movieInfoId").is(movieInfoId);
+        var branches = new ArrayList<Criteria>();
+        Sort order;
+        switch (sort) {
+            case RATING:
+                // movieInfoId_rating_id read backwards
+                if (afterId == null) {
+                    branches.add(movie.get().and("rating").ne(null));
+                } else {
+                    branches.add(movie.get().and("rating").lt(afterRating));
+                    branches.addAll(idRanges(() -> movie.get().and("rating").is(afterRating), afterId, true));
+                }
+                order = Sort.by(Sort.Direction.DESC, "rating", "reviewId");
+                break;
+            case RECENT:
+                // movieInfoId_id read backwards
+                branches.addAll(afterId == null ? List.of(movie.get()) : idRanges(movie, afterId, true));
+                order = Sort.by(Sort.Direction.DESC, "reviewId");
+                break;
+            default:
+                branches.addAll(afterId == null ? List.of(movie.get()) : idRanges(movie, afterId, false));
+                order = Sort.by("reviewId");
+        }
+        var criteria = branches.size() == 1 ? branches.get(0) : new Criteria().orOperator(branches.toArray(Criteria[]::new));
+        return reactiveMongoTemplate.find(Query.query(criteria).with(order).limit(limit), Review.class);
+    }
+
+    // The _id ranges after afterId, each one on top of a fresh prefix. Every branch of the $or carries the
+    // movieInfoId equality, so each one is a bounded index scan and the page starts where the cursor is,
+    // instead of skipping over the index entries of the earlier pages.
+    // A movie can have both kinds of reviewId: ObjectIds generated on POST and the string ids partner exports
+    // bring through /bulk. A $gt or $lt on one kind never matches the other, so the kind still ahead of the
+    // cursor gets a branch of its own: the ObjectIds after a string id, the strings below an ObjectId.
+    private static List<Criteria> idRanges(Supplier<Criteria> prefix, String afterId, boolean descending) {
+        if (ObjectId.isValid(afterId)) {
+            var id = new ObjectId(afterId);
+            if (!descending) {
+                return List.of(prefix.get().and("reviewId").gt(id));
+            }
+            // BSON type 2 is string
+            return List.of(prefix.get().and("reviewId").lt(id), prefix.get().and("reviewId").type(2));
+        }
+        if (descending) {
+            return List.of(prefix.get().and("reviewId").lt(afterId));
+        }
+        // BSON type 7 is ObjectId
+        return List.of(prefix.get().and("reviewId").gt(afterId), prefix.get().and("reviewId").type(7));
+    }
+
+    @Override
+    public Flux<ReviewBulkResult> upsertAllUnordered(List<Review> reviews, Map<String, Review> stored) {
+        if (reviews.isEmpty()) {
+            return Flux.empty();
+        }
+        var writes = reviews.stream()
+                .map(review -> toWrite(review, stored.get(review.getReviewId())))
+                .collect(Collectors.toList());
+
+        // Unordered so one failing review does not stop the rest of the batch
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .map(bulkWriteResult -> new BulkOutcome(upserted(bulkWriteResult), Map.of()))
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(new BulkOutcome(upserted(ex.getWriteResult()),
+                        ex.getWriteErrors().stream()
+                                .collect(Collectors.toMap(BulkWriteError::getIndex, ReviewReactiveRepositoryCustomImpl::message)))))
+                .flatMapMany(outcome -> Flux.range(0, reviews.size())
+                        .map(index -> toResult(index, reviews.get(index), writes.get(index), outcome)))
+                .onErrorResume(ex -> Flux.range(0, reviews.size())
+                        .map(index -> new ReviewBulkResult(index, reviews.get(index).getReviewId(),
+                                ReviewBulkResult.Status.FAILED, ex.getMessage())));
+    }
+
+    // A review that was not stored is inserted, one that was only replaces it while it still has the movie
+    // and rating that were read. Either way a concurrent writer turns the write into a duplicate key error
+    // instead of a replacement of something the summary never saw. A review deleted in between is upserted.
+    private WriteModel<Document> toWrite(Review review, Review previous) {
+        var document = toDocument(review);
+        if (previous == null) {
+            return new InsertOneModel<>(document);
+        }
+        var filter = Filters.and(Filters.eq("_id", document.get("_id")),
+                Filters.eq("movieInfoId", previous.getMovieInfoId()),
+                Filters.eq("rating", previous.getRating()));
+        return new ReplaceOneModel<>(filter, document, new ReplaceOptions().upsert(true));
+    }
+
+    private static String message(BulkWriteError error) {
+        if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+            return "review was changed by another request while it was written, send it again";
+        }
+        return error.getMessage();
+    }
+
+    private Document toDocument(Review review) {
+        // Assign the id up front, the upsert needs it for its filter and every review can be reported
+        if (review.getReviewId() == null) {
+            review.setReviewId(new ObjectId().toHexString());
+        }
+        var document = new Document();
+        reactiveMongoTemplate.getConverter().write(review, document);
+        return document;
+    }
+
+    private static Set<Integer> upserted(BulkWriteResult bulkWriteResult) {
+        return bulkWriteResult.getUpserts().stream()
+                .map(BulkWriteUpsert::getIndex)
+                .collect(Collectors.toSet());
+    }
+
+    // UPDATED only for a replacement that matched, so it replaced exactly the review that was read
+    private static ReviewBulkResult toResult(int index, Review review, WriteModel<Document> write, BulkOutcome outcome) {
+        var error = outcome.errors.get(index);
+        ReviewBulkResult.Status status;
+        if (error != null) {
+            status = ReviewBulkResult.Status.FAILED;
+        } else if (write instanceof InsertOneModel || outcome.upserted.contains(index)) {
+            status = ReviewBulkResult.Status.CREATED;
+        } else {
+            status = ReviewBulkResult.Status.UPDATED;
+        }
+        return new ReviewBulkResult(index, review.getReviewId(), status, error);
+    }
+
+    @AllArgsConstructor
+    private static class BulkOutcome {
+        private final Set<Integer> upserted;
+        private final Map<Integer, String> errors;
+    }
+
+    private static Query byId(String reviewId) {
+        return Query.query(Criteria.where("reviewId").is(reviewId));
+    }
+}
@@ -0,0 +1,19 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ReviewSummary;
+import reactor.core.publisher.Mono;
+
+// Each method is one atomic update of the summary document, concurrent writes of the same movie cannot lose counts.
+// A rating outside 0 to Review.MAX_RATING fails with an IllegalArgumentException and nothing is written.
+public interface ReviewSummaryRepositoryCustom {
+
+    // Creates the summary with the first rating of the movie
+    Mono<ReviewSummary> addRating(Long movieInfoId, double rating);
+
+    Mono<ReviewSummary> removeRating(Long movieInfoId, double rating);
+
+    Mono<ReviewSummary> replaceRating(Long movieInfoId, double previousRating, double rating);
+
+    // $min and $max cannot undo a rating, the bounds of the remaining reviews are set here
+    Mono<ReviewSummary> setBounds(Long movieInfoId, Double min, Double max);
+}
@@ -0,0 +1,91 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+public class ReviewSummaryRepositoryCustomImpl implements ReviewSummaryRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewSummaryRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<ReviewSummary> addRating(Long movieInfoId, double rating) {
+        if (outOfRange(rating)) {
+            return outOfRangeError(rating);
+        }
+        var update = new Update()
+                .inc("count", 1)
+                .inc("sum", rating)
+                .inc(bucket(rating), 1)
+                .min("min", rating)
+                .max("max", rating);
+        return modify(movieInfoId, update, true);
+    }
+
+    @Override
+    public Mono<ReviewSummary> removeRating(Long movieInfoId, double rating) {
+        if (outOfRange(rating)) {
+            return outOfRangeError(rating);
+        }
+        var update = new Update()
+                .inc("count", -1)
+                .inc("sum", -rating)
+                .inc(bucket(rating), -1);
+        return modify(movieInfoId, update, false);
+    }
+
+    @Override
+    public Mono<ReviewSummary> replaceRating(Long movieInfoId, double previousRating, double rating) {
+        if (outOfRange(previousRating) || outOfRange(rating)) {
+            return outOfRangeError(outOfRange(rating) ? rating : previousRating);
+        }
+        var update = new Update()
+                .inc("sum", rating - previousRating)
+                .min("min", rating)
+                .max("max", rating);
+        // One update cannot name the same path twice
+        if (!bucket(previousRating).equals(bucket(rating))) {
+            update.inc(bucket(previousRating), -1).inc(bucket(rating), 1);
+        }
+        return modify(movieInfoId, update, false);
+    }
+
+    @Override
+    public Mono<ReviewSummary> setBounds(Long movieInfoId, Double min, Double max) {
+        var update = new Update();
+        if (min == null || max == null) {
+            update.unset("min").unset("max");
+        } else {
+            update.set("min", min).set("max", max);
+        }
+        return modify(movieInfoId, update, false);
+    }
+
+    private Mono<ReviewSummary> modify(Long movieInfoId, Update update, boolean upsert) {
+        return reactiveMongoTemplate.findAndModify(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), update,
+                FindAndModifyOptions.options().returnNew(true).upsert(upsert), ReviewSummary.class);
+    }
+
+    static String bucket(double rating) {
+        return "histogram." + (long) Math.floor(rating);
+    }
+
+    // Review validation keeps ratings in range, this guards the histogram against a rating that bypassed it,
+    // e.g. one stored before the upper bound was checked. Each would otherwise $inc a bucket of its own.
+    static boolean outOfRange(double rating) {
+        return !(rating >= 0 && rating <= Review.MAX_RATING);
+    }
+
+    private static Mono<ReviewSummary> outOfRangeError(double rating) {
+        return Mono.error(new IllegalArgumentException("rating out of range: " + rating));
+    }
+}
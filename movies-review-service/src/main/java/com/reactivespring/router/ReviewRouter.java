@@ -0,0 +1,44 @@
+package com.reactivespring.router;
+
+import com.reactivespring.handler.ReviewHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+// Routes are tried in order, a paged listing takes precedence over the unpaged ones
+// and the NDJSON listing and stream have to come before the JSON and server-sent event ones
+@Configuration
+public class ReviewRouter {
+
+    private static final String REVIEWS = "/v1/reviews";
+
+    @Bean
+    public RouterFunction<ServerResponse> reviewsRoute(ReviewHandler reviewHandler) {
+        return route()
+                .GET(REVIEWS, queryParam("limit", limit -> true), reviewHandler::getReviewPage)
+                .GET(REVIEWS, acceptsExplicitly(MediaType.APPLICATION_NDJSON), reviewHandler::streamReviews)
+                .GET(REVIEWS, reviewHandler::getReviews)
+                .GET(REVIEWS + "/stream", acceptsExplicitly(MediaType.APPLICATION_NDJSON), reviewHandler::streamReviewEventsAsNdjson)
+                .GET(REVIEWS + "/stream", reviewHandler::streamReviewEvents)
+                .GET(REVIEWS + "/summary/{movieInfoId}", reviewHandler::getReviewSummary)
+                .GET(REVIEWS + "/top/{movieInfoId}", reviewHandler::getTopReviews)
+                .POST(REVIEWS + "/bulk", contentType(MediaType.APPLICATION_NDJSON), reviewHandler::addReviews)
+                .POST(REVIEWS, reviewHandler::addReview)
+                .PUT(REVIEWS + "/{id}", reviewHandler::updateReview)
+                .DELETE(REVIEWS + "/{id}", reviewHandler::deleteReview)
+                .build();
+    }
+
+    // A wildcard Accept, or none at all, gets the JSON array or the server-sent events
+    private static RequestPredicate acceptsExplicitly(MediaType mediaType) {
+        return request -> request.headers().accept().stream()
+                .anyMatch(accepted -> accepted.isConcrete() && mediaType.isCompatibleWith(accepted));
+    }
+}
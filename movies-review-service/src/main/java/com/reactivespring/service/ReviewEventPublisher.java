@@ -0,0 +1,93 @@
+package com.reactivespring.service;
+
+import com.reactivespring.operator.EventFanout;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Live review events for the /v1/reviews/stream dashboards. Nothing is replayed, a dashboard loads the current
+// reviews first and then follows the stream. A dashboard usually watches a few movies, its filter runs before
+// its EventFanout buffer so the reviews of every other movie cost it nothing.
+@Component
+@Slf4j
+public class ReviewEventPublisher {
+
+    private final EventFanout<ReviewEvent> fanout;
+
+    private final Duration heartbeatInterval;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    // From the review write to the hand-off to the dashboard's response, grows while a dashboard falls behind
+    private final Timer lag;
+
+    public ReviewEventPublisher(@Value("${review.events.buffer-size:256}") int bufferSize,
+                                @Value("${review.events.overflow:drop}") String overflow,
+                                @Value("${review.events.heartbeat-interval:15s}") Duration heartbeatInterval,
+                                MeterRegistry meterRegistry) {
+        Counter droppedEvents = meterRegistry.counter("review.events.dropped");
+        this.fanout = new EventFanout<>(Sinks.many().multicast().directBestEffort(), bufferSize,
+                EventFanout.Overflow.of(overflow), dropped -> droppedEvents.increment());
+        this.heartbeatInterval = heartbeatInterval;
+        this.lag = Timer.builder("review.events.lag")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("review.events.subscribers", subscribers);
+    }
+
+    public void created(Review review) {
+        publish(ReviewEvent.Type.CREATED, review);
+    }
+
+    public void updated(Review review) {
+        publish(ReviewEvent.Type.UPDATED, review);
+    }
+
+    public void deleted(Review review) {
+        publish(ReviewEvent.Type.DELETED, review);
+    }
+
+    private void publish(ReviewEvent.Type type, Review review) {
+        var result = fanout.publish(sequence ->
+                new ReviewEvent(sequence, type, review.getReviewId(), review.getMovieInfoId(), review, Instant.now()));
+        // Without an open dashboard the event has nobody to go to, that is not a failure
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            log.warn("Review event {} of {} not published: {}", type, review.getReviewId(), result);
+        }
+    }
+
+    // Live events of the given movies, of every movie if movieInfoIds is empty
+    public Flux<ReviewEvent> events(Set<Long> movieInfoIds) {
+        return Flux.defer(() -> {
+            subscribers.incrementAndGet();
+            var events = movieInfoIds.isEmpty()
+                    ? fanout.events()
+                    : fanout.events(event -> movieInfoIds.contains(event.getMovieInfoId()));
+            return events
+                    .doOnNext(event -> lag.record(Duration.between(event.getTimestamp(), Instant.now())))
+                    .doFinally(signalType -> subscribers.decrementAndGet());
+        });
+    }
+
+    public Flux<ServerSentEvent<ReviewEvent>> serverSentEvents(Set<Long> movieInfoIds) {
+        var events = events(movieInfoIds)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(String.valueOf(event.getSequence()))
+                        .event(event.getType().name())
+                        .build());
+        return EventFanout.withHeartbeats(events, heartbeatInterval,
+                () -> ServerSentEvent.<ReviewEvent>builder().comment("heartbeat").build());
+    }
+}
@@ -0,0 +1,389 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkLine;
+import com.reactivespring.domain.ReviewBulkProgress;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.domain.ReviewSort;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Every review write is followed by one $inc update of the movie's ReviewSummary and one review event.
+// The two are separate writes, a summary update that fails is logged and the review write still succeeds.
+@Service
+@Slf4j
+public class ReviewService {
+
+    static final int MAX_PAGE_LIMIT = 500;
+
+    private final ReviewReactiveRepository reviewReactiveRepository;
+
+    private final ReviewSummaryRepository reviewSummaryRepository;
+
+    private final ReviewEventPublisher reviewEventPublisher;
+
+    private final Validator validator;
+
+    private final int bulkBatchSize;
+    private final Duration bulkFlushInterval;
+    private final int bulkConcurrency;
+    private final int bulkDedupeWindow;
+    private final Duration bulkProgressInterval;
+
+    public ReviewService(ReviewReactiveRepository reviewReactiveRepository,
+                         ReviewSummaryRepository reviewSummaryRepository,
+                         ReviewEventPublisher reviewEventPublisher,
+                         Validator validator,
+                         @Value("${review.bulk.batch-size:500}") int bulkBatchSize,
+                         @Value("${review.bulk.flush-interval:100ms}") Duration bulkFlushInterval,
+                         @Value("${review.bulk.concurrency:2}") int bulkConcurrency,
+                         @Value("${review.bulk.dedupe-window:100000}") int bulkDedupeWindow,
+                         @Value("${review.bulk.progress-interval:1s}") Duration bulkProgressInterval) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewSummaryRepository = reviewSummaryRepository;
+        this.reviewEventPublisher = reviewEventPublisher;
+        this.validator = validator;
+        this.bulkBatchSize = bulkBatchSize;
+        this.bulkFlushInterval = bulkFlushInterval;
+        this.bulkConcurrency = bulkConcurrency;
+        // At least a batch, two copies of a review must never be written by the same unordered bulkWrite
+        this.bulkDedupeWindow = Math.max(bulkDedupeWindow, bulkBatchSize);
+        this.bulkProgressInterval = bulkProgressInterval;
+    }
+
+    // A null movieInfoId lists every review
+    public Flux<Review> getReviews(Long movieInfoId) {
+        if (movieInfoId == null) {
+            return reviewReactiveRepository.findAll();
+        }
+        return reviewReactiveRepository.findByMovieInfoIdOrderByReviewIdAsc(movieInfoId);
+    }
+
+    // Keyset pagination, a page is read from the index position the cursor points at,
+    // so its cost does not depend on how many pages came before it or how many reviews the movie has
+    public Mono<ReviewPage> getReviewPage(Long movieInfoId, ReviewSort sort, String after, int limit) {
+        var pageLimit = pageLimit(limit);
+        return Mono.fromCallable(() -> decodeCursor(after))
+                .flatMap(cursor -> toPage(reviewReactiveRepository.findPage(movieInfoId, sort, cursorRating(sort, cursor), cursor[1], pageLimit + 1),
+                        pageLimit, review -> encodeCursor(sort == ReviewSort.RATING ? String.valueOf(review.getRating()) : "", review.getReviewId())));
+    }
+
+    // The first n entries of the movie in movieInfoId_rating_id, read backwards
+    public Flux<Review> getTopReviews(Long movieInfoId, int n) {
+        return reviewReactiveRepository.findPage(movieInfoId, ReviewSort.RATING, null, null, pageLimit(n));
+    }
+
+    // insert, not save, a POST with the id of an existing review would be counted twice
+    public Mono<Review> addReview(Review review) {
+        return reviewReactiveRepository.insert(review)
+                .flatMap(saved -> summarize(saved.getMovieInfoId(), null, saved.getRating())
+                        .thenReturn(saved))
+                .doOnNext(reviewEventPublisher::created);
+    }
+
+    // One ReviewBulkResult per review in request order, with a ReviewBulkProgress every progress-interval
+    // and a last one with done set. Invalid reviews and repeats of a reviewId seen among the last dedupe-window
+    // reviews are reported and skipped, the rest is written as unordered bulk upserts of up to batch-size.
+    public Flux<ReviewBulkLine> addReviews(Flux<Review> reviews) {
+        return Flux.defer(() -> {
+            var progress = new BulkProgress(System.nanoTime());
+            var recentReviewIds = recentReviewIds();
+            // bufferTimeout flushes a partial batch when the client sends slowly, the batches are checked
+            // one at a time in request order, flatMapSequential keeps a few bulkWrites in flight
+            var results = reviews.index()
+                    .bufferTimeout(bulkBatchSize, bulkFlushInterval)
+                    .map(batch -> checkBatch(batch, recentReviewIds))
+                    .flatMapSequential(this::upsertBatch, bulkConcurrency)
+                    .doOnNext(progress::record);
+            return results.publish(shared -> Flux.<ReviewBulkLine>merge(shared,
+                            Flux.interval(bulkProgressInterval)
+                                    .onBackpressureDrop()
+                                    .map(tick -> progress.report(false))
+                                    .takeUntilOther(shared.ignoreElements())))
+                    .concatWith(Mono.fromCallable(() -> progress.report(true)));
+        });
+    }
+
+    // Empty if there is no review with this id
+    public Mono<Review> updateReview(String reviewId, Review review) {
+        return reviewReactiveRepository.updateReview(reviewId, review.getComment(), review.getRating())
+                .flatMap(previous -> {
+                    var updated = new Review(previous.getReviewId(), previous.getMovieInfoId(), review.getComment(), review.getRating());
+                    return summarize(previous.getMovieInfoId(), previous.getRating(), review.getRating())
+                            .thenReturn(updated);
+                })
+                .doOnNext(reviewEventPublisher::updated);
+    }
+
+    // Empty if there is no review with this id
+    public Mono<Review> deleteReview(String reviewId) {
+        return reviewReactiveRepository.removeReview(reviewId)
+                .flatMap(removed -> summarize(removed.getMovieInfoId(), removed.getRating(), null)
+                        .thenReturn(removed))
+                .doOnNext(reviewEventPublisher::deleted);
+    }
+
+    // One _id lookup, however many reviews the movie has
+    public Mono<ReviewSummary> getReviewSummary(Long movieInfoId) {
+        return reviewSummaryRepository.findById(movieInfoId)
+                .defaultIfEmpty(ReviewSummary.empty(movieInfoId));
+    }
+
+    // Live review events of the given movies, of every movie if movieInfoIds is empty
+    public Flux<ReviewEvent> streamReviewEvents(Set<Long> movieInfoIds) {
+        return reviewEventPublisher.events(movieInfoIds);
+    }
+
+    public Flux<ServerSentEvent<ReviewEvent>> streamReviewServerSentEvents(Set<Long> movieInfoIds) {
+        return reviewEventPublisher.serverSentEvents(movieInfoIds);
+    }
+
+    private CheckedBatch checkBatch(List<Tuple2<Long, Review>> batch, Set<String> recentReviewIds) {
+        var checked = new CheckedBatch(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        batch.forEach(indexed -> {
+            var review = indexed.getT2();
+            try {
+                validate(review);
+            } catch (ReviewDataException ex) {
+                checked.rejected.add(new ReviewBulkResult(indexed.getT1(), review.getReviewId(), ReviewBulkResult.Status.INVALID, ex.getMessage()));
+                return;
+            }
+            if (review.getReviewId() == null) {
+                review.setReviewId(new ObjectId().toHexString());
+            } else if (!recentReviewIds.add(review.getReviewId())) {
+                checked.rejected.add(new ReviewBulkResult(indexed.getT1(), review.getReviewId(), ReviewBulkResult.Status.DUPLICATE, null));
+                return;
+            }
+            checked.indexes.add(indexed.getT1());
+            checked.reviews.add(review);
+        });
+        return checked;
+    }
+
+    private Flux<ReviewBulkResult> upsertBatch(CheckedBatch batch) {
+        var reviewIds = batch.reviews.stream()
+                .map(Review::getReviewId)
+                .collect(Collectors.toList());
+        // The reviews being replaced, for the summary of their ratings. The write only replaces them while
+        // they are still as read here, so the statuses and the summary both follow what the bulkWrite did.
+        return reviewReactiveRepository.findAllById(reviewIds)
+                .collectMap(Review::getReviewId)
+                .flatMapMany(previous -> reviewReactiveRepository.upsertAllUnordered(batch.reviews, previous)
+                        .concatMap(result -> {
+                            var review = batch.reviews.get((int) result.getIndex());
+                            result.setIndex(batch.indexes.get((int) result.getIndex()));
+                            if (result.getStatus() == ReviewBulkResult.Status.CREATED) {
+                                return summarizeReplaced(null, review)
+                                        .then(Mono.fromRunnable(() -> reviewEventPublisher.created(review)))
+                                        .thenReturn(result);
+                            }
+                            if (result.getStatus() == ReviewBulkResult.Status.UPDATED) {
+                                return summarizeReplaced(previous.get(review.getReviewId()), review)
+                                        .then(Mono.fromRunnable(() -> reviewEventPublisher.updated(review)))
+                                        .thenReturn(result);
+                            }
+                            return Mono.just(result);
+                        }))
+                .concatWith(Flux.fromIterable(batch.rejected))
+                .sort(Comparator.comparingLong(ReviewBulkResult::getIndex));
+    }
+
+    // A replacement may move a review to another movie
+    private Mono<Void> summarizeReplaced(Review previous, Review review) {
+        if (previous == null) {
+            return summarize(review.getMovieInfoId(), null, review.getRating());
+        }
+        if (Objects.equals(previous.getMovieInfoId(), review.getMovieInfoId())) {
+            return summarize(review.getMovieInfoId(), previous.getRating(), review.getRating());
+        }
+        return summarize(previous.getMovieInfoId(), previous.getRating(), null)
+                .then(summarize(review.getMovieInfoId(), null, review.getRating()));
+    }
+
+    // Same message as the ReviewHandler response for a single POST
+    private void validate(Review review) {
+        var violations = validator.validate(review);
+        if (!violations.isEmpty()) {
+            throw new ReviewDataException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(",")));
+        }
+    }
+
+    // The reviewIds of the last dedupe-window reviews, the eldest one is forgotten first
+    private Set<String> recentReviewIds() {
+        return Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > bulkDedupeWindow;
+            }
+        });
+    }
+
+    // How far the summary can be from the reviews:
+    // - count, sum and histogram are $inc'd after the review write, not in a transaction with it. Concurrent
+    //   writes add up correctly, but a summary update that fails or never runs (e.g. the process stops between
+    //   the two writes) leaves the summary off by that review, nothing reconciles it with the reviews later.
+    // - min and max only widen with $min/$max. When the rating that was a bound goes away, refreshBounds reads
+    //   the bounds of the remaining reviews and $sets them. A rating written between that read and the $set
+    //   is not in the bounds until the next refresh of the movie. Average and histogram are not affected.
+    private Mono<Void> summarize(Long movieInfoId, Double previousRating, Double rating) {
+        if (movieInfoId == null || Objects.equals(previousRating, rating)) {
+            return Mono.empty();
+        }
+        Mono<ReviewSummary> summary;
+        if (previousRating == null) {
+            summary = reviewSummaryRepository.addRating(movieInfoId, rating);
+        } else if (rating == null) {
+            summary = reviewSummaryRepository.removeRating(movieInfoId, previousRating);
+        } else {
+            summary = reviewSummaryRepository.replaceRating(movieInfoId, previousRating, rating);
+        }
+        return summary
+                // Only a rating that was the lowest or highest one needs the bounds to be read again
+                .filter(updated -> previousRating != null
+                        && (previousRating.equals(updated.getMin()) || previousRating.equals(updated.getMax())))
+                .flatMap(updated -> refreshBounds(movieInfoId))
+                .then()
+                .onErrorResume(ex -> {
+                    log.error("Review summary of movieInfoId {} not updated", movieInfoId, ex);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<ReviewSummary> refreshBounds(Long movieInfoId) {
+        var min = reviewReactiveRepository.findRatingBound(movieInfoId, false);
+        var max = reviewReactiveRepository.findRatingBound(movieInfoId, true);
+        return Mono.zip(min, max)
+                .flatMap(bounds -> reviewSummaryRepository.setBounds(movieInfoId, bounds.getT1(), bounds.getT2()))
+                // No rated review left
+                .switchIfEmpty(Mono.defer(() -> reviewSummaryRepository.setBounds(movieInfoId, null, null)));
+    }
+
+    // The handler passes the limit as the client sent it, e.g. limit=0 gets a page of one review
+    private static int pageLimit(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT);
+    }
+
+    // findPage is asked for one review more than the page holds, only that extra review tells there is a next page,
+    // the reviews of the movie are never counted
+    private static Mono<ReviewPage> toPage(Flux<Review> reviews, int pageLimit, Function<Review, String> cursorOf) {
+        return reviews.collectList()
+                .map(list -> {
+                    if (list.size() <= pageLimit) {
+                        return new ReviewPage(list, null);
+                    }
+                    var page = list.subList(0, pageLimit);
+                    return new ReviewPage(page, cursorOf.apply(page.get(pageLimit - 1)));
+                });
+    }
+
+    private static Double cursorRating(ReviewSort sort, String[] cursor) {
+        if (sort != ReviewSort.RATING || cursor[1] == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(cursor[0]);
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException("invalid cursor");
+        }
+    }
+
+    // Cursors carry the sort key, empty unless sorted by rating, and the reviewId tie breaker
+    private static String encodeCursor(String key, String reviewId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + "\n" + reviewId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The cursor comes back from the client, one that does not decode is a 400, not a 500
+    private static String[] decodeCursor(String cursor) {
+        if (cursor == null) {
+            return new String[2];
+        }
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separator = decoded.lastIndexOf('\n');
+            if (separator < 0) {
+                throw new ReviewDataException("invalid cursor");
+            }
+            return new String[]{decoded.substring(0, separator), decoded.substring(separator + 1)};
+        } catch (IllegalArgumentException ex) {
+            throw new ReviewDataException("invalid cursor");
+        }
+    }
+
+    @AllArgsConstructor
+    private static class CheckedBatch {
+        private final List<Long> indexes;
+        private final List<Review> reviews;
+        // INVALID and DUPLICATE results, nothing is written for them
+        private final List<ReviewBulkResult> rejected;
+    }
+
+    // Counts per status, read by the progress ticks while the results are recorded
+    private static class BulkProgress {
+        private final long startNanos;
+        private final AtomicLongArray counts = new AtomicLongArray(ReviewBulkResult.Status.values().length);
+
+        private BulkProgress(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        private void record(ReviewBulkResult result) {
+            counts.incrementAndGet(result.getStatus().ordinal());
+        }
+
+        private ReviewBulkProgress report(boolean done) {
+            var elapsedNanos = System.nanoTime() - startNanos;
+            long processed = 0;
+            for (var i = 0; i < counts.length(); i++) {
+                processed += counts.get(i);
+            }
+            var throughput = elapsedNanos == 0 ? 0 : Math.round(processed / (elapsedNanos / 1e9) * 10) / 10.0;
+            return new ReviewBulkProgress(processed,
+                    count(ReviewBulkResult.Status.CREATED),
+                    count(ReviewBulkResult.Status.UPDATED),
+                    count(ReviewBulkResult.Status.DUPLICATE),
+                    count(ReviewBulkResult.Status.INVALID),
+                    count(ReviewBulkResult.Status.FAILED),
+                    elapsedNanos / 1_000_000,
+                    throughput,
+                    done);
+        }
+
+        private long count(ReviewBulkResult.Status status) {
+            return counts.get(status.ordinal());
+        }
+    }
+}
@@ -1,4 +1,400 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.5.5")
+@AutoConfigureWebTestClient
 public class ReviewsIntgTest {
+
+    private static final String REVIEWS_URL = "/v1/reviews";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    private ReviewSummaryRepository reviewSummaryRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        var reviews = List.of(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Awesome Movie1", 9.0),
+                new Review("3", 2L, "Excellent Movie", 8.0));
+        reviewReactiveRepository.saveAll(reviews)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+        reviewSummaryRepository.deleteAll().block();
+    }
+
+    @Test
+    void addReview() {
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review(null, 1L, "Awesome Movie", 9.0))
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(reviewResponse -> {
+                    var savedReview = reviewResponse.getResponseBody();
+                    assert savedReview != null;
+                    assert savedReview.getReviewId() != null;
+                });
+    }
+
+    @Test
+    void getReviews() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+    }
+
+    @Test
+    void getReviewsByMovieInfoId() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .value(reviews -> assertEquals(List.of("1", "2"), reviews.stream()
+                        .map(Review::getReviewId)
+                        .collect(Collectors.toList())));
+    }
+
+    @Test
+    void getReviewsByMovieInfoId_ndjson() {
+        var reviews = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=2")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Review.class)
+                .getResponseBody();
+
+        StepVerifier.create(reviews.map(Review::getReviewId))
+                .expectNext("3")
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewsByMovieInfoId_usesIndex() {
+        var indexes = reactiveMongoTemplate.indexOps(Review.class).getIndexInfo()
+                .map(IndexInfo::getName)
+                .collectList()
+                .block();
+        assertTrue(indexes.contains("movieInfoId_id"));
+
+        // The same query as findByMovieInfoIdOrderByReviewIdAsc
+        var explain = reactiveMongoTemplate.executeCommand(new Document("explain",
+                        new Document("find", reactiveMongoTemplate.getCollectionName(Review.class))
+                                .append("filter", new Document("movieInfoId", 1L))
+                                .append("sort", new Document("_id", 1)))
+                        .append("verbosity", "queryPlanner"))
+                .block()
+                .toJson();
+        assertTrue(explain.contains("IXSCAN"));
+        assertFalse(explain.contains("COLLSCAN"));
+    }
+
+    @Test
+    void getReviewPage_byRating() {
+        // Ties on 7.0 and 8.0, a mix of string ids and generated ObjectIds
+        var reviews = new ArrayList<Review>();
+        for (var i = 0; i < 12; i++) {
+            reviews.add(new Review(i % 3 == 0 ? "p" + i : null, 4L, "Review " + i, i < 4 ? null : 7.0 + i % 2));
+        }
+        reviewReactiveRepository.saveAll(reviews).blockLast();
+
+        var ratings = new ArrayList<Double>();
+        var reviewIds = new ArrayList<String>();
+        String after = null;
+        do {
+            var page = reviewPage("?movieInfoId=4&sort=rating&limit=3" + (after == null ? "" : "&after=" + after));
+            assertTrue(page.getReviews().size() <= 3);
+            page.getReviews().forEach(review -> {
+                ratings.add(review.getRating());
+                reviewIds.add(review.getReviewId());
+            });
+            after = page.getNextCursor();
+        } while (after != null);
+
+        // The 8 rated reviews, highest rating first, each one once
+        assertEquals(List.of(8.0, 8.0, 8.0, 8.0, 7.0, 7.0, 7.0, 7.0), ratings);
+        assertEquals(8, reviewIds.stream().distinct().count());
+    }
+
+    @Test
+    void getReviewPage_recent() {
+        reviewReactiveRepository.save(new Review(null, 1L, "Newest Movie", 7.0)).block();
+
+        var first = reviewPage("?movieInfoId=1&sort=recent&limit=2");
+        assertEquals("Newest Movie", first.getReviews().get(0).getComment());
+        assertEquals("2", first.getReviews().get(1).getReviewId());
+
+        var second = reviewPage("?movieInfoId=1&sort=recent&limit=2&after=" + first.getNextCursor());
+        assertEquals(List.of("1"), second.getReviews().stream()
+                .map(Review::getReviewId)
+                .collect(Collectors.toList()));
+        assertEquals(null, second.getNextCursor());
+    }
+
+    @Test
+    void getTopReviews() {
+        reviewReactiveRepository.save(new Review("4", 1L, "Best Movie", 10.0)).block();
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top/{movieInfoId}?n=2", 1)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .value(reviews -> assertEquals(List.of("4", "2"), reviews.stream()
+                        .map(Review::getReviewId)
+                        .collect(Collectors.toList())));
+    }
+
+    @Test
+    void getReviewPage_readsOnlyThePage() {
+        var reviews = new ArrayList<Review>();
+        for (var i = 0; i < 200; i++) {
+            reviews.add(new Review(String.format("k%03d", i), 5L, "Review " + i, 8.0));
+        }
+        reviewReactiveRepository.saveAll(reviews).blockLast();
+
+        // The query of the page after k100 sorted by rating, all ratings tie so the page comes from the second branch
+        var movie = new Document("movieInfoId", 5L);
+        var filter = new Document("$or", List.of(
+                new Document(movie).append("rating", new Document("$lt", 8.0)),
+                new Document(movie).append("rating", 8.0).append("_id", new Document("$lt", "k100"))));
+        var explain = reactiveMongoTemplate.executeCommand(new Document("explain",
+                        new Document("find", reactiveMongoTemplate.getCollectionName(Review.class))
+                                .append("filter", filter)
+                                .append("sort", new Document("rating", -1).append("_id", -1))
+                                .append("limit", 11))
+                        .append("verbosity", "executionStats"))
+                .block();
+        var stats = (Document) explain.get("executionStats");
+
+        assertEquals(11, stats.getInteger("nReturned"));
+        // Not the 100 reviews before the cursor
+        assertTrue(stats.getInteger("totalDocsExamined") <= 2 * 11);
+        assertFalse(explain.toJson().contains("COLLSCAN"));
+    }
+
+    private ReviewPage reviewPage(String query) {
+        return webTestClient
+                .get()
+                .uri(REVIEWS_URL + query)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(ReviewPage.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Test
+    void reviewSummary() {
+        for (var rating : List.of(6.0, 8.5, 9.0)) {
+            webTestClient
+                    .post()
+                    .uri(REVIEWS_URL)
+                    .bodyValue(new Review("s" + rating, 3L, "Rated " + rating, rating))
+                    .exchange()
+                    .expectStatus()
+                    .isCreated();
+        }
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "s6.0")
+                .bodyValue(new Review(null, 3L, "Rated 7.0", 7.0))
+                .exchange()
+                .expectStatus()
+                .isOk();
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "s9.0")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/summary/{movieInfoId}", 3)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(ReviewSummary.class)
+                .consumeWith(summaryResponse -> {
+                    var summary = summaryResponse.getResponseBody();
+                    assert summary != null;
+                    assertEquals(2, summary.getCount());
+                    assertEquals(15.5, summary.getSum());
+                    assertEquals(7.0, summary.getMin());
+                    // 9.0 was deleted, the max is read back from the remaining reviews
+                    assertEquals(8.5, summary.getMax());
+                    assertEquals(Map.of("6", 0L, "7", 1L, "8", 1L, "9", 0L), summary.getHistogram());
+                });
+    }
+
+    @Test
+    void addReview_duplicate() {
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review("1", 1L, "Awesome Movie", 9.0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void streamReviewEvents() {
+        // The response headers go out with the first event, so the writes can't wait for exchange() to return
+        Mono.delay(Duration.ofMillis(500))
+                .subscribe(tick -> List.of(new Review("e1", 2L, "Other Movie", 6.0), new Review("e2", 1L, "Streamed Movie", 7.0))
+                        .forEach(review -> webTestClient
+                                .post()
+                                .uri(REVIEWS_URL)
+                                .bodyValue(review)
+                                .exchange()
+                                .expectStatus()
+                                .isCreated()));
+
+        var events = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=1")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(ReviewEvent.class)
+                .getResponseBody();
+
+        // The review of movie 2 is not sent to this subscriber
+        StepVerifier.create(events.take(1))
+                .assertNext(event -> {
+                    assertEquals(ReviewEvent.Type.CREATED, event.getType());
+                    assertEquals("e2", event.getReviewId());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void addReviews() {
+        var lines = String.join("\n",
+                "{\"reviewId\":\"b1\",\"movieInfoId\":6,\"comment\":\"Awesome Movie\",\"rating\":9.0}",
+                "{\"reviewId\":\"b2\",\"movieInfoId\":6,\"comment\":\"Awful Movie\",\"rating\":-1.0}",
+                "{\"reviewId\":\"b1\",\"movieInfoId\":6,\"comment\":\"Copy\",\"rating\":1.0}",
+                "{\"reviewId\":\"1\",\"movieInfoId\":6,\"comment\":\"Moved Review\",\"rating\":7.0}") + "\n";
+
+        var results = webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(lines)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Map.class)
+                .getResponseBody()
+                .filter(line -> "result".equals(line.get("type")))
+                .map(line -> line.get("status"))
+                .collectList()
+                .block();
+
+        assertEquals(List.of("CREATED", "INVALID", "DUPLICATE", "UPDATED"), results);
+        StepVerifier.create(reviewReactiveRepository.findById("b1").map(Review::getComment))
+                .expectNext("Awesome Movie")
+                .verifyComplete();
+        // Review 1 was moved from movie 1 to movie 6, with its rating
+        StepVerifier.create(reviewSummaryRepository.findById(6L).map(ReviewSummary::getCount))
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    void updateReview() {
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "1")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+                .consumeWith(reviewResponse -> {
+                    var updatedReview = reviewResponse.getResponseBody();
+                    assert updatedReview != null;
+                    assertEquals("Not an Awesome Movie", updatedReview.getComment());
+                    assertEquals(8.0, updatedReview.getRating());
+                });
+    }
+
+    @Test
+    void deleteReview() {
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        StepVerifier.create(reviewReactiveRepository.findById("1"))
+                .verifyComplete();
+    }
 }
@@ -0,0 +1,45 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ReviewSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ReviewSummaryRepositoryCustomImplTest {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+
+    private final ReviewSummaryRepositoryCustomImpl reviewSummaryRepository =
+            new ReviewSummaryRepositoryCustomImpl(reactiveMongoTemplate);
+
+    @Test
+    void bucket() {
+        assertEquals("histogram.8", ReviewSummaryRepositoryCustomImpl.bucket(8.5));
+        assertEquals("histogram.10", ReviewSummaryRepositoryCustomImpl.bucket(10.0));
+    }
+
+    @Test
+    void outOfRangeRatingsAreNotWritten() {
+        StepVerifier.create(reviewSummaryRepository.addRating(1L, 1e19))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(reviewSummaryRepository.removeRating(1L, -1.0))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(reviewSummaryRepository.replaceRating(1L, 9.0, Double.POSITIVE_INFINITY))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(reviewSummaryRepository.replaceRating(1L, Double.NaN, 9.0))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(reactiveMongoTemplate, never()).findAndModify(any(), any(), any(), eq(ReviewSummary.class));
+    }
+}
@@ -1,4 +1,447 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkLine;
+import com.reactivespring.domain.ReviewBulkProgress;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.domain.ReviewSort;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.handler.ReviewHandler;
+import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.service.ReviewService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest
+@Import({ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class})
+@AutoConfigureWebTestClient
 public class ReviewsUnitTest {
+
+    private static final String REVIEWS_URL = "/v1/reviews";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReviewService reviewService;
+
+    @Test
+    void addReview() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        when(reviewService.addReview(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(reviewResponse -> {
+                    var savedReview = reviewResponse.getResponseBody();
+                    assert savedReview != null;
+                    assertEquals("abc", savedReview.getReviewId());
+                });
+    }
+
+    @Test
+    void addReview_validation() {
+        var review = new Review(null, null, "Awesome Movie", 9.0);
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.movieInfoId : must not be null");
+
+        verify(reviewService, never()).addReview(isA(Review.class));
+    }
+
+    @Test
+    void addReview_negativeRating() {
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review(null, 1L, "Awful Movie", -1.0))
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("rating.negative : please pass a non-negative value");
+    }
+
+    @Test
+    void addReview_ratingAboveTen() {
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review(null, 1L, "Beyond Awesome Movie", 11.0))
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("rating.tooHigh : please pass a value up to 10");
+    }
+
+    @Test
+    void addReviews() {
+        when(reviewService.addReviews(any())).thenAnswer(invocation -> {
+            Flux<Review> reviews = invocation.getArgument(0);
+            return reviews.<ReviewBulkLine>map(review -> new ReviewBulkResult(0, review.getReviewId(), ReviewBulkResult.Status.CREATED, null))
+                    .concatWith(Mono.just(new ReviewBulkProgress(1, 1, 0, 0, 0, 0, 5, 200.0, true)));
+        });
+
+        var lines = webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}\n")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Map.class)
+                .getResponseBody();
+
+        StepVerifier.create(lines)
+                .assertNext(line -> assertEquals(List.of("result", "1", "CREATED"), List.of(line.get("type"), line.get("reviewId"), line.get("status"))))
+                .assertNext(line -> assertEquals(List.of("progress", 1, true), List.of(line.get("type"), line.get("processed"), line.get("done"))))
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviews() {
+        when(reviewService.getReviews(isNull())).thenReturn(Flux.just(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 2L, "Excellent Movie", 8.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getReviewsByMovieInfoId() {
+        when(reviewService.getReviews(1L)).thenReturn(Flux.just(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("3", 1L, "Excellent Movie", 8.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+
+        verify(reviewService, never()).getReviews(isNull());
+    }
+
+    @Test
+    void getReviewsByMovieInfoId_invalid() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.movieInfoId : must be a number");
+    }
+
+    @Test
+    void getReviewsByMovieInfoId_ndjson() {
+        when(reviewService.getReviews(1L)).thenReturn(Flux.just(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("3", 1L, "Excellent Movie", 8.0)));
+
+        var reviews = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Review.class)
+                .getResponseBody();
+
+        StepVerifier.create(reviews.map(Review::getReviewId))
+                .expectNext("1", "3")
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewSummary() {
+        when(reviewService.getReviewSummary(1L))
+                .thenReturn(Mono.just(new ReviewSummary(1L, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L))));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/summary/{movieInfoId}", 1)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(2)
+                .jsonPath("$.average").isEqualTo(8.5)
+                .jsonPath("$.min").isEqualTo(8.0)
+                .jsonPath("$.histogram.9").isEqualTo(1);
+    }
+
+    @Test
+    void updateReview() {
+        when(reviewService.updateReview(eq("1"), isA(Review.class)))
+                .thenReturn(Mono.just(new Review("1", 1L, "Not an Awesome Movie", 8.0)));
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "1")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+                .consumeWith(reviewResponse -> {
+                    var updatedReview = reviewResponse.getResponseBody();
+                    assert updatedReview != null;
+                    assertEquals("1", updatedReview.getReviewId());
+                    assertEquals("Not an Awesome Movie", updatedReview.getComment());
+                    assertEquals(8.0, updatedReview.getRating());
+                });
+    }
+
+    @Test
+    void updateReview_negativeRating() {
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "1")
+                .bodyValue(new Review(null, 1L, "Awful Movie", -1.0))
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("rating.negative : please pass a non-negative value");
+
+        verify(reviewService, never()).updateReview(any(), any());
+    }
+
+    @Test
+    void updateReview_notFound() {
+        when(reviewService.updateReview(eq("def"), isA(Review.class))).thenReturn(Mono.empty());
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "def")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("Review not found for the given Review id def");
+    }
+
+    @Test
+    void getReviewPage() {
+        when(reviewService.getReviewPage(1L, ReviewSort.RATING, "abc", 2)).thenReturn(Mono.just(new ReviewPage(List.of(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("3", 1L, "Excellent Movie", 8.0)), "def")));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&sort=rating&after=abc&limit=2")
+                .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(ReviewPage.class)
+                .consumeWith(pageResponse -> {
+                    var page = pageResponse.getResponseBody();
+                    assert page != null;
+                    assertEquals(2, page.getReviews().size());
+                    assertEquals("def", page.getNextCursor());
+                });
+
+        verify(reviewService, never()).getReviews(1L);
+    }
+
+    @Test
+    void getReviewPage_defaultSort() {
+        when(reviewService.getReviewPage(1L, ReviewSort.REVIEW_ID, null, 10)).thenReturn(Mono.just(new ReviewPage(List.of(), null)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&limit=10")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        verify(reviewService).getReviewPage(1L, ReviewSort.REVIEW_ID, null, 10);
+    }
+
+    @Test
+    void getReviewPage_invalid() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?limit=10")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.movieInfoId : must not be null");
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&limit=10&sort=oldest")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.sort : must be one of reviewId, rating, recent");
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&limit=ten")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.limit : must be a number");
+    }
+
+    @Test
+    void getTopReviews() {
+        when(reviewService.getTopReviews(1L, 10)).thenReturn(Flux.just(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("3", 1L, "Excellent Movie", 8.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top/{movieInfoId}", 1)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void streamReviewEvents_ndjson() {
+        var review = new Review("1", 1L, "Awesome Movie", 9.0);
+        when(reviewService.streamReviewEvents(Set.of(1L, 2L, 3L))).thenReturn(Flux.just(
+                new ReviewEvent(1, ReviewEvent.Type.CREATED, "1", 1L, review, Instant.now())));
+
+        var events = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=1,2&movieInfoId=3")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(ReviewEvent.class)
+                .getResponseBody();
+
+        StepVerifier.create(events.map(ReviewEvent::getReviewId))
+                .expectNext("1")
+                .verifyComplete();
+    }
+
+    @Test
+    void streamReviewEvents_serverSentEvents() {
+        when(reviewService.streamReviewServerSentEvents(Set.of())).thenReturn(Flux.just(
+                ServerSentEvent.builder(new ReviewEvent(1, ReviewEvent.Type.DELETED, "1", 1L, null, Instant.now()))
+                        .id("1")
+                        .event("DELETED")
+                        .build()));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM);
+
+        verify(reviewService).streamReviewServerSentEvents(Set.of());
+    }
+
+    @Test
+    void streamReviewEvents_invalidMovieInfoId() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=1,abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.movieInfoId : must be a number");
+    }
+
+    @Test
+    void deleteReview() {
+        when(reviewService.deleteReview("1")).thenReturn(Mono.just(new Review("1", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        verify(reviewService).deleteReview("1");
+    }
+
+    @Test
+    void deleteReview_notFound() {
+        when(reviewService.deleteReview("def")).thenReturn(Mono.empty());
+
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "def")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
 }
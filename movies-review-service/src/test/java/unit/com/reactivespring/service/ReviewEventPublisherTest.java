@@ -0,0 +1,92 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The overflow policies and heartbeats themselves are covered by EventFanoutTest
+class ReviewEventPublisherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReviewEventPublisher publisher(String overflow) {
+        return new ReviewEventPublisher(2, overflow, Duration.ofSeconds(15), meterRegistry);
+    }
+
+    @Test
+    void events_onlyLiveOnes() {
+        var publisher = publisher("drop");
+        publisher.created(review("a", 1L));
+
+        StepVerifier.create(publisher.events(Set.of()).map(ReviewEvent::getSequence).take(2))
+                .then(() -> publisher.created(review("b", 1L)))
+                .then(() -> publisher.deleted(review("b", 1L)))
+                .expectNext(2L, 3L)
+                .verifyComplete();
+        assertEquals(2, meterRegistry.get("review.events.lag").timer().count());
+    }
+
+    @Test
+    void events_ofTheGivenMovies() {
+        var publisher = publisher("drop");
+
+        StepVerifier.create(publisher.events(Set.of(1L, 3L)).map(ReviewEvent::getReviewId).take(2))
+                .then(() -> List.of(review("a", 1L), review("b", 2L), review("c", 3L)).forEach(publisher::created))
+                .expectNext("a", "c")
+                .verifyComplete();
+    }
+
+    @Test
+    void events_otherMoviesDoNotFillTheBuffer() {
+        var publisher = publisher("drop");
+
+        StepVerifier.create(publisher.events(Set.of(1L)).map(ReviewEvent::getReviewId), 0)
+                .then(() -> List.of(review("a", 2L), review("b", 2L), review("c", 1L), review("d", 2L)).forEach(publisher::created))
+                .thenRequest(1)
+                .expectNext("c")
+                .thenCancel()
+                .verify();
+        assertEquals(0.0, meterRegistry.counter("review.events.dropped").count());
+    }
+
+    @Test
+    void events_disconnectedDashboardIsNoLongerCounted() {
+        var publisher = publisher("disconnect");
+
+        StepVerifier.create(publisher.events(Set.of()), 0)
+                .then(() -> List.of("a", "b", "c").forEach(id -> publisher.created(review(id, 1L))))
+                // The buffered events are still delivered, then the overflow error
+                .thenRequest(2)
+                .expectNextCount(2)
+                .verifyError();
+        assertEquals(0.0, meterRegistry.get("review.events.subscribers").gauge().value());
+    }
+
+    @Test
+    void serverSentEvents_ofTheGivenMovies() {
+        var publisher = publisher("drop");
+
+        StepVerifier.create(publisher.serverSentEvents(Set.of(1L)))
+                .then(() -> publisher.created(review("a", 2L)))
+                .then(() -> publisher.updated(review("b", 1L)))
+                .assertNext(sse -> {
+                    assertEquals(List.of("2", "UPDATED", "b"), List.of(sse.id(), sse.event(), sse.data().getReviewId()));
+                    assertTrue(sse.data().getTimestamp() != null);
+                })
+                .thenCancel()
+                .verify();
+    }
+
+    private static Review review(String reviewId, Long movieInfoId) {
+        return new Review(reviewId, movieInfoId, "Awesome Movie", 9.0);
+    }
+}
@@ -0,0 +1,316 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkProgress;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.domain.ReviewSort;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReviewServiceTest {
+
+    private final ReviewReactiveRepository reviewReactiveRepository = mock(ReviewReactiveRepository.class);
+
+    private final ReviewSummaryRepository reviewSummaryRepository = mock(ReviewSummaryRepository.class);
+
+    private final ReviewEventPublisher reviewEventPublisher = mock(ReviewEventPublisher.class);
+
+    // Bulk batches of 2, the smallest dedupe window is a batch
+    private final ReviewService reviewService = new ReviewService(reviewReactiveRepository, reviewSummaryRepository, reviewEventPublisher,
+            Validation.buildDefaultValidatorFactory().getValidator(), 2, Duration.ofMillis(100), 2, 1, Duration.ofSeconds(1));
+
+    @Test
+    void addReview_addsTheRating() {
+        var review = new Review("1", 1L, "Awesome Movie", 9.0);
+        when(reviewReactiveRepository.insert(review)).thenReturn(Mono.just(review));
+        when(reviewSummaryRepository.addRating(1L, 9.0)).thenReturn(Mono.just(summary(1, 9.0, 9.0, 9.0)));
+
+        StepVerifier.create(reviewService.addReview(review))
+                .expectNext(review)
+                .verifyComplete();
+
+        verify(reviewSummaryRepository).addRating(1L, 9.0);
+        verify(reviewEventPublisher).created(review);
+    }
+
+    @Test
+    void addReview_withoutRating() {
+        var review = new Review("1", 1L, "Awesome Movie", null);
+        when(reviewReactiveRepository.insert(review)).thenReturn(Mono.just(review));
+
+        StepVerifier.create(reviewService.addReview(review))
+                .expectNext(review)
+                .verifyComplete();
+
+        verify(reviewSummaryRepository, never()).addRating(anyLong(), anyDouble());
+    }
+
+    @Test
+    void addReview_summaryFailureKeepsTheReview() {
+        var review = new Review("1", 1L, "Awesome Movie", 9.0);
+        when(reviewReactiveRepository.insert(review)).thenReturn(Mono.just(review));
+        when(reviewSummaryRepository.addRating(1L, 9.0)).thenReturn(Mono.error(new UncategorizedMongoDbException("down", null)));
+
+        StepVerifier.create(reviewService.addReview(review))
+                .expectNext(review)
+                .verifyComplete();
+    }
+
+    @Test
+    void updateReview_replacesTheRating() {
+        when(reviewReactiveRepository.updateReview("1", "Good Movie", 7.0))
+                .thenReturn(Mono.just(new Review("1", 1L, "Awesome Movie", 9.0)));
+        // 9.0 is still the max, another review has it
+        when(reviewSummaryRepository.replaceRating(1L, 9.0, 7.0)).thenReturn(Mono.just(summary(2, 16.0, 7.0, 9.0)));
+        when(reviewReactiveRepository.findRatingBound(1L, false)).thenReturn(Mono.just(7.0));
+        when(reviewReactiveRepository.findRatingBound(1L, true)).thenReturn(Mono.just(9.0));
+        when(reviewSummaryRepository.setBounds(1L, 7.0, 9.0)).thenReturn(Mono.just(summary(2, 16.0, 7.0, 9.0)));
+
+        StepVerifier.create(reviewService.updateReview("1", new Review(null, null, "Good Movie", 7.0)))
+                .expectNext(new Review("1", 1L, "Good Movie", 7.0))
+                .verifyComplete();
+
+        verify(reviewSummaryRepository).setBounds(1L, 7.0, 9.0);
+        verify(reviewEventPublisher).updated(new Review("1", 1L, "Good Movie", 7.0));
+    }
+
+    @Test
+    void updateReview_sameRating() {
+        when(reviewReactiveRepository.updateReview("1", "Good Movie", 9.0))
+                .thenReturn(Mono.just(new Review("1", 1L, "Awesome Movie", 9.0)));
+
+        StepVerifier.create(reviewService.updateReview("1", new Review(null, null, "Good Movie", 9.0)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(reviewSummaryRepository, never()).replaceRating(anyLong(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void updateReview_notFound() {
+        when(reviewReactiveRepository.updateReview("def", "Good Movie", 7.0)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reviewService.updateReview("def", new Review(null, null, "Good Movie", 7.0)))
+                .verifyComplete();
+
+        verify(reviewEventPublisher, never()).updated(any(Review.class));
+    }
+
+    @Test
+    void deleteReview_innerRatingKeepsTheBounds() {
+        var review = new Review("1", 1L, "Awesome Movie", 8.0);
+        when(reviewReactiveRepository.removeReview("1")).thenReturn(Mono.just(review));
+        when(reviewSummaryRepository.removeRating(1L, 8.0)).thenReturn(Mono.just(summary(2, 16.0, 7.0, 9.0)));
+
+        StepVerifier.create(reviewService.deleteReview("1"))
+                .expectNext(review)
+                .verifyComplete();
+
+        verify(reviewReactiveRepository, never()).findRatingBound(anyLong(), any(Boolean.class));
+        verify(reviewEventPublisher).deleted(review);
+    }
+
+    @Test
+    void deleteReview_lastRatingUnsetsTheBounds() {
+        var review = new Review("1", 1L, "Awesome Movie", 9.0);
+        when(reviewReactiveRepository.removeReview("1")).thenReturn(Mono.just(review));
+        when(reviewSummaryRepository.removeRating(1L, 9.0)).thenReturn(Mono.just(summary(0, 0, 9.0, 9.0)));
+        when(reviewReactiveRepository.findRatingBound(1L, false)).thenReturn(Mono.empty());
+        when(reviewReactiveRepository.findRatingBound(1L, true)).thenReturn(Mono.empty());
+        when(reviewSummaryRepository.setBounds(1L, null, null)).thenReturn(Mono.just(summary(0, 0, null, null)));
+
+        StepVerifier.create(reviewService.deleteReview("1"))
+                .expectNext(review)
+                .verifyComplete();
+
+        verify(reviewSummaryRepository).setBounds(1L, null, null);
+    }
+
+    @Test
+    void getReviewSummary_withoutReviews() {
+        when(reviewSummaryRepository.findById(2L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reviewService.getReviewSummary(2L))
+                .expectNext(ReviewSummary.empty(2L))
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewPage_byRating() {
+        var first = new Review("1", 1L, "Awesome Movie", 9.0);
+        var second = new Review("2", 1L, "Good Movie", 8.0);
+        when(reviewReactiveRepository.findPage(1L, ReviewSort.RATING, null, null, 3))
+                .thenReturn(Flux.just(first, second, new Review("3", 1L, "Good Movie", 8.0)));
+        var page = reviewService.getReviewPage(1L, ReviewSort.RATING, null, 2).block();
+
+        assert page != null;
+        assertEquals(List.of(first, second), page.getReviews());
+        when(reviewReactiveRepository.findPage(1L, ReviewSort.RATING, 8.0, "2", 3))
+                .thenReturn(Flux.just(new Review("3", 1L, "Good Movie", 8.0)));
+
+        // The cursor of the last review of the page, its rating and reviewId
+        StepVerifier.create(reviewService.getReviewPage(1L, ReviewSort.RATING, page.getNextCursor(), 2))
+                .expectNext(new ReviewPage(List.of(new Review("3", 1L, "Good Movie", 8.0)), null))
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewPage_recent() {
+        var review = new Review("2", 1L, "Good Movie", 8.0);
+        when(reviewReactiveRepository.findPage(1L, ReviewSort.RECENT, null, null, 3)).thenReturn(Flux.just(review));
+
+        StepVerifier.create(reviewService.getReviewPage(1L, ReviewSort.RECENT, null, 2))
+                .expectNext(new ReviewPage(List.of(review), null))
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewPage_invalidCursor() {
+        StepVerifier.create(reviewService.getReviewPage(1L, ReviewSort.RATING, "not a cursor", 2))
+                .verifyError(ReviewDataException.class);
+        // A cursor without a rating
+        StepVerifier.create(reviewService.getReviewPage(1L, ReviewSort.RATING, "CjI", 2))
+                .verifyError(ReviewDataException.class);
+
+        verify(reviewReactiveRepository, never()).findPage(anyLong(), any(ReviewSort.class), any(), any(), any(Integer.class));
+    }
+
+    @Test
+    void getTopReviews_isBounded() {
+        when(reviewReactiveRepository.findPage(1L, ReviewSort.RATING, null, null, ReviewService.MAX_PAGE_LIMIT))
+                .thenReturn(Flux.empty());
+
+        StepVerifier.create(reviewService.getTopReviews(1L, 100_000))
+                .verifyComplete();
+
+        verify(reviewReactiveRepository).findPage(eq(1L), eq(ReviewSort.RATING), isNull(), isNull(), eq(ReviewService.MAX_PAGE_LIMIT));
+    }
+
+    @Test
+    void addReviews_reportsEachReview() {
+        var created = new Review("1", 1L, "Awesome Movie", 9.0);
+        var updated = new Review("3", 1L, "Good Movie", 7.0);
+        when(reviewReactiveRepository.findAllById(List.of("1"))).thenReturn(Flux.empty());
+        when(reviewReactiveRepository.findAllById(List.of("3"))).thenReturn(Flux.just(new Review("3", 1L, "Bad Movie", 5.0)));
+        when(reviewReactiveRepository.upsertAllUnordered(List.of(created), Map.of()))
+                .thenReturn(Flux.just(new ReviewBulkResult(0, "1", ReviewBulkResult.Status.CREATED, null)));
+        when(reviewReactiveRepository.upsertAllUnordered(List.of(updated), Map.of("3", new Review("3", 1L, "Bad Movie", 5.0))))
+                .thenReturn(Flux.just(new ReviewBulkResult(0, "3", ReviewBulkResult.Status.UPDATED, null)));
+        when(reviewSummaryRepository.addRating(1L, 9.0)).thenReturn(Mono.just(summary(1, 9.0, 9.0, 9.0)));
+        when(reviewSummaryRepository.replaceRating(1L, 5.0, 7.0)).thenReturn(Mono.just(summary(2, 16.0, 7.0, 9.0)));
+
+        var reviews = Flux.just(created, new Review("2", 1L, "Awful Movie", -1.0), new Review("1", 1L, "Copy", 9.0), updated);
+
+        StepVerifier.create(reviewService.addReviews(reviews))
+                .expectNext(new ReviewBulkResult(0, "1", ReviewBulkResult.Status.CREATED, null))
+                // Reported without aborting the stream
+                .expectNext(new ReviewBulkResult(1, "2", ReviewBulkResult.Status.INVALID, "rating.negative : please pass a non-negative value"))
+                .expectNext(new ReviewBulkResult(2, "1", ReviewBulkResult.Status.DUPLICATE, null))
+                .expectNext(new ReviewBulkResult(3, "3", ReviewBulkResult.Status.UPDATED, null))
+                .assertNext(report -> {
+                    var progress = (ReviewBulkProgress) report;
+                    assertEquals(List.of(4L, 1L, 1L, 1L, 1L, 0L), List.of(progress.getProcessed(), progress.getCreated(),
+                            progress.getUpdated(), progress.getDuplicate(), progress.getInvalid(), progress.getFailed()));
+                    assertTrue(progress.isDone());
+                })
+                .verifyComplete();
+
+        verify(reviewSummaryRepository).replaceRating(1L, 5.0, 7.0);
+        verify(reviewEventPublisher).created(created);
+        verify(reviewEventPublisher).updated(updated);
+    }
+
+    @Test
+    void addReviews_reviewChangedSinceReadIsNotSummarized() {
+        var stored = new Review("3", 1L, "Bad Movie", 5.0);
+        var review = new Review("3", 1L, "Good Movie", 7.0);
+        when(reviewReactiveRepository.findAllById(List.of("3"))).thenReturn(Flux.just(stored));
+        // What the repository reports when another request rated the review in between
+        when(reviewReactiveRepository.upsertAllUnordered(List.of(review), Map.of("3", stored)))
+                .thenReturn(Flux.just(new ReviewBulkResult(0, "3", ReviewBulkResult.Status.FAILED, "changed")));
+
+        StepVerifier.create(reviewService.addReviews(Flux.just(review)))
+                .expectNext(new ReviewBulkResult(0, "3", ReviewBulkResult.Status.FAILED, "changed"))
+                .assertNext(report -> {
+                    var progress = (ReviewBulkProgress) report;
+                    assertEquals(List.of(1L, 0L, 0L, 1L), List.of(progress.getProcessed(), progress.getCreated(),
+                            progress.getUpdated(), progress.getFailed()));
+                })
+                .verifyComplete();
+
+        verify(reviewSummaryRepository, never()).replaceRating(anyLong(), anyDouble(), anyDouble());
+        verify(reviewEventPublisher, never()).updated(any());
+    }
+
+    @Test
+    void addReviews_dedupeWindowIsBounded() {
+        when(reviewReactiveRepository.findAllById(anyIterable())).thenReturn(Flux.empty());
+        when(reviewReactiveRepository.upsertAllUnordered(anyList(), anyMap())).thenAnswer(invocation -> {
+            List<Review> batch = invocation.getArgument(0);
+            return Flux.range(0, batch.size())
+                    .map(index -> new ReviewBulkResult(index, batch.get(index).getReviewId(), ReviewBulkResult.Status.CREATED, null));
+        });
+        when(reviewSummaryRepository.addRating(anyLong(), anyDouble())).thenReturn(Mono.just(summary(1, 9.0, 9.0, 9.0)));
+
+        var reviews = Flux.just("a", "b", "c", "a", "c")
+                .map(reviewId -> new Review(reviewId, 1L, "Awesome Movie", 9.0));
+
+        // The window holds the last 2 reviewIds, "a" is forgotten once "c" comes in
+        StepVerifier.create(reviewService.addReviews(reviews)
+                        .ofType(ReviewBulkResult.class)
+                        .map(ReviewBulkResult::getStatus))
+                .expectNext(ReviewBulkResult.Status.CREATED, ReviewBulkResult.Status.CREATED, ReviewBulkResult.Status.CREATED,
+                        ReviewBulkResult.Status.CREATED, ReviewBulkResult.Status.DUPLICATE)
+                .verifyComplete();
+    }
+
+    @Test
+    void addReviews_reportsProgressWhileRunning() {
+        when(reviewReactiveRepository.findAllById(anyIterable())).thenReturn(Flux.empty());
+        when(reviewReactiveRepository.upsertAllUnordered(anyList(), anyMap()))
+                .thenReturn(Flux.just(new ReviewBulkResult(0, "a", ReviewBulkResult.Status.CREATED, null)));
+        when(reviewSummaryRepository.addRating(anyLong(), anyDouble())).thenReturn(Mono.just(summary(1, 9.0, 9.0, 9.0)));
+
+        // One review, then the client takes 2.5s to end the request
+        StepVerifier.withVirtualTime(() -> reviewService.addReviews(Flux.just(new Review("a", 1L, "Awesome Movie", 9.0))
+                        .concatWith(Mono.delay(Duration.ofMillis(2500)).then(Mono.empty()))))
+                .thenAwait(Duration.ofSeconds(3))
+                .expectNextMatches(ReviewBulkResult.class::isInstance)
+                .expectNextMatches(report -> ((ReviewBulkProgress) report).getProcessed() == 1 && !((ReviewBulkProgress) report).isDone())
+                .expectNextMatches(report -> ((ReviewBulkProgress) report).getProcessed() == 1 && !((ReviewBulkProgress) report).isDone())
+                .expectNextMatches(report -> ((ReviewBulkProgress) report).isDone())
+                .verifyComplete();
+    }
+
+    private static ReviewSummary summary(long count, double sum, Double min, Double max) {
+        return new ReviewSummary(1L, count, sum, min, max, Map.of());
+    }
+}
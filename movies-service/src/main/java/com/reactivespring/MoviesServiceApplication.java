@@ -2,12 +2,16 @@ package com.reactivespring;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class MoviesServiceApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(MoviesServiceApplication.class, args);
+		var application = new SpringApplication(MoviesServiceApplication.class);
+		// Records the startup steps for service-startup's StartupConfiguration
+		application.setApplicationStartup(new BufferingApplicationStartup(4096));
+		application.run(args);
 	}
 
 }
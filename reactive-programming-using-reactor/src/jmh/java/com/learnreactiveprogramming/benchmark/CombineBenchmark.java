@@ -0,0 +1,59 @@
+package com.learnreactiveprogramming.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+// The two source combinations of exploreConcat, exploreMerge, exploreMergeSequntial and exploreZip,
+// without their delays, for two sources of elements / 2 each
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CombineBenchmark {
+
+    @Param({"100", "10000"})
+    int elements;
+
+    // elements requested from each source at a time, concat has no prefetch
+    @Param({"1", "32", "256"})
+    int prefetch;
+
+    @Benchmark
+    public Integer concat() {
+        return Flux.concat(first(), second())
+                .blockLast();
+    }
+
+    @Benchmark
+    public Integer merge() {
+        return Flux.merge(prefetch, first(), second())
+                .blockLast();
+    }
+
+    @Benchmark
+    public Integer mergeSequential() {
+        return Flux.mergeSequential(prefetch, first(), second())
+                .blockLast();
+    }
+
+    @Benchmark
+    public Integer zip() {
+        return first().zipWith(second(), prefetch, Integer::sum)
+                .blockLast();
+    }
+
+    private Flux<Integer> first() {
+        return Flux.range(0, elements / 2);
+    }
+
+    private Flux<Integer> second() {
+        return Flux.range(elements / 2, elements / 2);
+    }
+}
@@ -0,0 +1,42 @@
+package com.learnreactiveprogramming.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+// concatMap, one inner Flux at a time, with the same inner Flux as FlatMapBenchmark so the two compare directly
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcatMapBenchmark {
+
+    @Param({"100", "10000"})
+    int elements;
+
+    // elements requested from the outer Flux ahead of the inner one being drained
+    @Param({"1", "32", "256"})
+    int prefetch;
+
+    @Param({"false", "true"})
+    boolean async;
+
+    @Benchmark
+    public Integer concatMap() {
+        return Flux.range(0, elements)
+                .concatMap(this::inner, prefetch)
+                .blockLast();
+    }
+
+    private Flux<Integer> inner(int element) {
+        var inner = Flux.range(element, FlatMapBenchmark.INNER);
+        return async ? inner.subscribeOn(Schedulers.parallel()) : inner;
+    }
+}
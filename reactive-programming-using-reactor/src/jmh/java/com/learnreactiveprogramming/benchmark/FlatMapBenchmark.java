@@ -0,0 +1,57 @@
+package com.learnreactiveprogramming.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+// flatMap and flatMapSequential (mergeSequential per element) with each element mapped to a short inner
+// Flux, like splitString in namesFluxWithFlatMap. With async the inner Flux is subscribed on the parallel
+// scheduler, the case of namesFluxWithFlatMapAsynchronous without its delay.
+// One operation is the whole pipeline, compare the results of the same elements only.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FlatMapBenchmark {
+
+    // elements of each inner Flux
+    static final int INNER = 8;
+
+    @Param({"100", "10000"})
+    int elements;
+
+    @Param({"1", "16", "256"})
+    int concurrency;
+
+    @Param({"1", "32", "256"})
+    int prefetch;
+
+    @Param({"false", "true"})
+    boolean async;
+
+    @Benchmark
+    public Integer flatMap() {
+        return Flux.range(0, elements)
+                .flatMap(this::inner, concurrency, prefetch)
+                .blockLast();
+    }
+
+    @Benchmark
+    public Integer flatMapSequential() {
+        return Flux.range(0, elements)
+                .flatMapSequential(this::inner, concurrency, prefetch)
+                .blockLast();
+    }
+
+    private Flux<Integer> inner(int element) {
+        var inner = Flux.range(element, INNER);
+        return async ? inner.subscribeOn(Schedulers.parallel()) : inner;
+    }
+}
@@ -0,0 +1,83 @@
+package com.learnreactiveprogramming.benchmark;
+
+import com.learnreactiveprogramming.service.FluxAndMonoGeneratorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// The FluxAndMonoGeneratorService pipelines as they are, the ones with delayElements or log() are left out
+// since the delay or the logging is all they would measure.
+// transform and inline build the same pipeline, transform only applies the function once at assembly.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GeneratorServiceBenchmark {
+
+    private final FluxAndMonoGeneratorService service = new FluxAndMonoGeneratorService();
+
+    private final Function<Flux<String>, Flux<String>> filterMap = names -> names.map(String::toUpperCase)
+            .flatMap(service::splitString);
+
+    @Benchmark
+    public String namesFluxWithFlatMap() {
+        return service.namesFluxWithFlatMap().blockLast();
+    }
+
+    @Benchmark
+    public String namesFluxTransform() {
+        return service.namesFluxTransform().blockLast();
+    }
+
+    @Benchmark
+    public String transform() {
+        return Flux.fromIterable(List.of("Shubham", "Alex", "Ali", "Josh"))
+                .transform(filterMap)
+                .blockLast();
+    }
+
+    @Benchmark
+    public String inline() {
+        return Flux.fromIterable(List.of("Shubham", "Alex", "Ali", "Josh"))
+                .map(String::toUpperCase)
+                .flatMap(service::splitString)
+                .blockLast();
+    }
+
+    @Benchmark
+    public String namesFluxTransformWithSwitchIfEmpty() {
+        return service.namesFluxTransformWithSwitchIfEmpty().blockLast();
+    }
+
+    @Benchmark
+    public List<String> namesMonoFlatMapWithFilter() {
+        return service.namesMonoFlatMapWithFilter().block();
+    }
+
+    @Benchmark
+    public String namesMonoFlatMapManyWithFilter() {
+        return service.namesMonoFlatMapManyWithFilter().blockLast();
+    }
+
+    @Benchmark
+    public String exploreConcat() {
+        return service.exploreConcat().blockLast();
+    }
+
+    @Benchmark
+    public String exploreZip() {
+        return service.exploreZip().blockLast();
+    }
+
+    @Benchmark
+    public String exploreZipTuples() {
+        return service.exploreZipTuples().blockLast();
+    }
+}
@@ -0,0 +1,59 @@
+package com.learnreactiveprogramming.benchmark;
+
+import com.learnreactiveprogramming.operator.CharSequenceFlux;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// splitString before and after CharSequenceFlux, a name of length chars split and drained
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SplitStringBenchmark {
+
+    @Param({"7", "100"})
+    int length;
+
+    String name;
+
+    @Setup
+    public void setUp() {
+        name = "SHUBHAM".repeat(length / 7 + 1).substring(0, length);
+    }
+
+    @Benchmark
+    public String split() {
+        return Flux.fromArray(name.split("")).blockLast();
+    }
+
+    @Benchmark
+    public String characters() {
+        return CharSequenceFlux.characters(name).blockLast();
+    }
+
+    @Benchmark
+    public String chunks() {
+        return CharSequenceFlux.chunks(name, 16).blockLast();
+    }
+
+    @Benchmark
+    public List<String> splitList() {
+        return List.of(name.split(""));
+    }
+
+    @Benchmark
+    public String characterList() {
+        // the view allocates nothing until read
+        var characters = CharSequenceFlux.characterList(name);
+        return characters.get(characters.size() - 1);
+    }
+}
@@ -0,0 +1,117 @@
+package com.learnreactiveprogramming.operator;
+
+import reactor.core.publisher.Flux;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits a CharSequence without String.split(""), which compiles a regex and allocates an array and
+// one String per character before the first element is emitted.
+// Characters below 256 come from a shared table, so splitting a Latin-1 name allocates per subscription only.
+// A surrogate pair is one code point and stays one element, split("") cuts it into two broken Strings.
+// The sequence is read while the Flux is consumed, it must not change until then.
+public final class CharSequenceFlux {
+
+    private static final String[] LATIN_1 = new String[256];
+
+    static {
+        for (char c = 0; c < LATIN_1.length; c++) {
+            LATIN_1[c] = String.valueOf(c).intern();
+        }
+    }
+
+    private CharSequenceFlux() {
+    }
+
+    // One String per code point
+    public static Flux<String> characters(CharSequence sequence) {
+        return Flux.generate(() -> new int[1], (position, sink) -> {
+            if (position[0] >= sequence.length()) {
+                sink.complete();
+                return position;
+            }
+            var codePoint = Character.codePointAt(sequence, position[0]);
+            position[0] += Character.charCount(codePoint);
+            sink.next(character(codePoint));
+            return position;
+        });
+    }
+
+    // Strings of up to size chars, a surrogate pair is never cut in two.
+    // One signal carries several characters, for consumers that do little work per character.
+    public static Flux<String> chunks(CharSequence sequence, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        return Flux.generate(() -> new int[1], (position, sink) -> {
+            var start = position[0];
+            if (start >= sequence.length()) {
+                sink.complete();
+                return position;
+            }
+            var end = Math.min(start + size, sequence.length());
+            if (end < sequence.length() && Character.isHighSurrogate(sequence.charAt(end - 1))
+                    && Character.isLowSurrogate(sequence.charAt(end))) {
+                // a chunk of one char takes the whole pair, a longer one leaves it to the next chunk
+                end = end - 1 == start ? end + 1 : end - 1;
+            }
+            position[0] = end;
+            sink.next(sequence.subSequence(start, end).toString());
+            return position;
+        });
+    }
+
+    // The non empty runs between delimiters
+    public static Flux<String> tokens(CharSequence sequence, char delimiter) {
+        return Flux.generate(() -> new int[1], (position, sink) -> {
+            var start = position[0];
+            while (start < sequence.length() && sequence.charAt(start) == delimiter) {
+                start++;
+            }
+            if (start >= sequence.length()) {
+                position[0] = start;
+                sink.complete();
+                return position;
+            }
+            var end = start + 1;
+            while (end < sequence.length() && sequence.charAt(end) != delimiter) {
+                end++;
+            }
+            position[0] = end;
+            sink.next(sequence.subSequence(start, end).toString());
+            return position;
+        });
+    }
+
+    // The code points of the sequence as an unmodifiable List, a view unless the sequence has surrogate pairs
+    public static List<String> characterList(CharSequence sequence) {
+        if (Character.codePointCount(sequence, 0, sequence.length()) != sequence.length()) {
+            var characters = new ArrayList<String>();
+            for (var position = 0; position < sequence.length(); ) {
+                var codePoint = Character.codePointAt(sequence, position);
+                position += Character.charCount(codePoint);
+                characters.add(character(codePoint));
+            }
+            return List.copyOf(characters);
+        }
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return character(sequence.charAt(index));
+            }
+
+            @Override
+            public int size() {
+                return sequence.length();
+            }
+        };
+    }
+
+    static String character(int codePoint) {
+        if (codePoint < LATIN_1.length) {
+            return LATIN_1[codePoint];
+        }
+        return new StringBuilder(2).appendCodePoint(codePoint).toString();
+    }
+}
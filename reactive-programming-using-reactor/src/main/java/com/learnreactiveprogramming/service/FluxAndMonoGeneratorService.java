@@ -1,5 +1,7 @@
 package com.learnreactiveprogramming.service;
 
+import com.learnreactiveprogramming.operator.CharSequenceFlux;
+import com.reactivespring.operator.SignalTracer;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -10,17 +12,29 @@ import java.util.function.Function;
 
 public class FluxAndMonoGeneratorService {
 
+    // Logs the signals of namesFlux and namesMono when enabled, see SignalTracer.shared
+    private final SignalTracer signalTracer;
+
+    public FluxAndMonoGeneratorService() {
+        this(SignalTracer.shared());
+    }
+
+    public FluxAndMonoGeneratorService(SignalTracer signalTracer) {
+        this.signalTracer = signalTracer;
+    }
+
     // namesFlux is a flux publisher
     public Flux<String> namesFlux() {
         // Flux.fromIterable is a data source
-        return Flux.fromIterable(List.of("Shubham", "Alex", "Ali", "Josh")).log();
+        return Flux.fromIterable(List.of("Shubham", "Alex", "Ali", "Josh"))
+                .transform(signalTracer.flux("namesFlux"));
     }
 
     public Flux<String> namesFluxWithMap() {
         // Flux.fromIterable is a data source
         return Flux.fromIterable(List.of("Shubham", "Alex", "Ali", "Josh"))
                 .map(String::toUpperCase)
-                .log();
+                .transform(signalTracer.flux("namesFluxWithMap"));
     }
 
     public Flux<String> namesFluxWithMapAndFilter() {
@@ -30,19 +44,17 @@ public class FluxAndMonoGeneratorService {
                 // Used for synchronous operations
                 .map(String::toUpperCase)
                 .filter(name -> name.length() > 3)
-                .log();
+                .transform(signalTracer.flux("namesFluxWithMapAndFilter"));
     }
 
     public Flux<String> splitString(String name) {
-        var charArray = name.split("");
-        return Flux.fromArray(charArray);
+        return CharSequenceFlux.characters(name);
     }
 
     public Flux<String> splitStringWithDelay(String name) {
-        var charArray = name.split("");
         Random random = new Random();
         var duration = random.nextInt(1000);
-        return Flux.fromArray(charArray)
+        return CharSequenceFlux.characters(name)
                 .delayElements(Duration.ofMillis(duration));
     }
 
@@ -133,7 +145,8 @@ public class FluxAndMonoGeneratorService {
 
     // namesMono is a mono publisher
     public Mono<String> namesMono() {
-        return Mono.just("Jayesh").log();
+        return Mono.just("Jayesh")
+                .transform(signalTracer.mono("namesMono"));
     }
 
     public Mono<List<String>> namesMonoFlatMapWithFilter() {
@@ -152,9 +165,7 @@ public class FluxAndMonoGeneratorService {
     }
 
     public Mono<List<String>> splitStringMono(String name) {
-        var charArray = name.split("");
-        var list = List.of(charArray);
-        return Mono.just(list);
+        return Mono.just(CharSequenceFlux.characterList(name));
     }
 
     public Flux<String> exploreConcat() {
@@ -0,0 +1,100 @@
+package com.learnreactiveprogramming.operator;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CharSequenceFluxTest {
+
+    // U+1F3AC, two chars
+    private static final String CLAPPER = "\uD83C\uDFAC";
+
+    @Test
+    public void testCharacters() {
+        StepVerifier.create(CharSequenceFlux.characters("ALEX"))
+                .expectNext("A", "L", "E", "X")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCharactersMatchSplit() {
+        var name = "Am\u00E9lie \u6771\u4EAC";
+
+        StepVerifier.create(CharSequenceFlux.characters(name).collectList())
+                .expectNext(List.of(name.split("")))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCharactersKeepSurrogatePairs() {
+        StepVerifier.create(CharSequenceFlux.characters("A" + CLAPPER + "B"))
+                .expectNext("A", CLAPPER, "B")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCharactersEmpty() {
+        StepVerifier.create(CharSequenceFlux.characters(""))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCharactersResubscribe() {
+        var characters = CharSequenceFlux.characters("ALI");
+
+        StepVerifier.create(characters.concatWith(characters))
+                .expectNext("A", "L", "I", "A", "L", "I")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCharactersAreShared() {
+        var first = CharSequenceFlux.characters("A").blockLast();
+        var second = CharSequenceFlux.characters(new StringBuilder("A")).blockLast();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testChunks() {
+        StepVerifier.create(CharSequenceFlux.chunks("SHUBHAM", 3))
+                .expectNext("SHU", "BHA", "M")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testChunksKeepSurrogatePairs() {
+        StepVerifier.create(CharSequenceFlux.chunks("AB" + CLAPPER + "C", 3))
+                .expectNext("AB", CLAPPER + "C")
+                .verifyComplete();
+        StepVerifier.create(CharSequenceFlux.chunks(CLAPPER + "A", 1))
+                .expectNext(CLAPPER, "A")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testChunksInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> CharSequenceFlux.chunks("ALEX", 0));
+    }
+
+    @Test
+    public void testTokens() {
+        StepVerifier.create(CharSequenceFlux.tokens("  the dark  knight ", ' '))
+                .expectNext("the", "dark", "knight")
+                .verifyComplete();
+        StepVerifier.create(CharSequenceFlux.tokens("   ", ' '))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCharacterList() {
+        assertEquals(List.of("A", "L", "E", "X"), CharSequenceFlux.characterList("ALEX"));
+        assertEquals(List.of("A", CLAPPER), CharSequenceFlux.characterList("A" + CLAPPER));
+        assertThrows(UnsupportedOperationException.class, () -> CharSequenceFlux.characterList("ALEX").add("S"));
+    }
+}
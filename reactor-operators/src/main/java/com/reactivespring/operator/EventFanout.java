@@ -0,0 +1,81 @@
+package com.reactivespring.operator;
+
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// One sink fanned out to every subscriber, publishing an event costs the same whatever their number.
+// Each subscriber filters the events first and drains what is left from its own bounded buffer, so a slow
+// subscriber only affects itself: the overflow policy decides what it loses, nobody else waits for it.
+// The sink decides what a new subscriber sees first, e.g. a replay sink hands it the latest events.
+public class EventFanout<E> {
+
+    public enum Overflow {
+        // discard new events while the subscriber's buffer is full
+        DROP,
+        // discard the oldest buffered events to make room, the subscriber catches up on the latest ones
+        LATEST,
+        // terminate the subscription with an error
+        DISCONNECT;
+
+        public static Overflow of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Sinks.Many<E> sink;
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final Consumer<? super E> onDropped;
+
+    private long sequence;
+
+    public EventFanout(Sinks.Many<E> sink, int bufferSize, Overflow overflow, Consumer<? super E> onDropped) {
+        this.sink = sink;
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        this.onDropped = onDropped;
+    }
+
+    // event builds the event from its sequence number, 1 for the first one.
+    // Synchronized so the sequence matches the emission order and the sink is never emitted to concurrently.
+    public synchronized Sinks.EmitResult publish(LongFunction<? extends E> event) {
+        return sink.tryEmitNext(event.apply(++sequence));
+    }
+
+    public Flux<E> events() {
+        return withOverflow(sink.asFlux());
+    }
+
+    // Filtered before the buffer, the events filter rejects take none of its room
+    public Flux<E> events(Predicate<? super E> filter) {
+        return withOverflow(sink.asFlux().filter(filter));
+    }
+
+    // Merges heartbeat() into the events every interval while they are idle or not, e.g. server-sent event
+    // comment lines that keep proxies from closing the connection. An error of the events ends the heartbeats too.
+    public static <T> Flux<T> withHeartbeats(Flux<T> events, Duration interval, Supplier<T> heartbeat) {
+        var heartbeats = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .map(tick -> heartbeat.get());
+        return events.mergeWith(heartbeats);
+    }
+
+    private Flux<E> withOverflow(Flux<E> events) {
+        switch (overflow) {
+            case LATEST:
+                return events.onBackpressureBuffer(bufferSize, onDropped, BufferOverflowStrategy.DROP_OLDEST);
+            case DISCONNECT:
+                return events.onBackpressureBuffer(bufferSize, onDropped, BufferOverflowStrategy.ERROR);
+            default:
+                return events.onBackpressureBuffer(bufferSize, onDropped, BufferOverflowStrategy.DROP_LATEST);
+        }
+    }
+}
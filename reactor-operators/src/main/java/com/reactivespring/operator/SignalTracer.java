@@ -0,0 +1,219 @@
+package com.reactivespring.operator;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// In place of .log(): .transform(signalTracer.flux("namesFlux")).
+// A sampled subscription offers its signals to a bounded buffer and one background thread logs them,
+// a full buffer drops the signal instead of blocking the publisher.
+// Disabled, or with a sample rate of 0, transform returns the pipeline as it is, there is no operator to pay for.
+// configure applies to pipelines assembled after the call.
+@Slf4j
+public class SignalTracer {
+
+    private static final Set<SignalType> ALL = EnumSet.of(SignalType.SUBSCRIBE, SignalType.REQUEST,
+            SignalType.ON_NEXT, SignalType.ON_ERROR, SignalType.ON_COMPLETE, SignalType.CANCEL);
+
+    private static volatile SignalTracer shared;
+
+    private final BlockingQueue<TracedSignal> buffer;
+    private final Scheduler drainScheduler;
+    private final Disposable drain;
+
+    private final AtomicLong subscriptions = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean enabled;
+    private volatile double sampleRate;
+    private volatile Set<SignalType> signals;
+
+    public SignalTracer(boolean enabled, double sampleRate, Set<SignalType> signals, int bufferSize, Duration drainInterval) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.drainScheduler = Schedulers.newSingle("signal-trace", true);
+        this.drain = drainScheduler.schedulePeriodically(this::drain,
+                drainInterval.toMillis(), drainInterval.toMillis(), TimeUnit.MILLISECONDS);
+        configure(enabled, sampleRate, signals);
+    }
+
+    // One tracer for the JVM, -Dsignaltrace.enabled=true -Dsignaltrace.sample-rate=1 logs every signal like .log() did
+    public static SignalTracer shared() {
+        if (shared == null) {
+            synchronized (SignalTracer.class) {
+                if (shared == null) {
+                    shared = new SignalTracer(
+                            Boolean.getBoolean("signaltrace.enabled"),
+                            Double.parseDouble(System.getProperty("signaltrace.sample-rate", "0.01")),
+                            parseSignals(System.getProperty("signaltrace.signals", "ON_NEXT,ON_ERROR,ON_COMPLETE,CANCEL")),
+                            Integer.getInteger("signaltrace.buffer-size", 4096),
+                            Duration.ofMillis(Long.getLong("signaltrace.drain-interval-ms", 100)));
+                }
+            }
+        }
+        return shared;
+    }
+
+    public static Set<SignalType> parseSignals(String signals) {
+        var types = EnumSet.noneOf(SignalType.class);
+        Arrays.stream(signals.split(","))
+                .map(String::trim)
+                .filter(signal -> !signal.isEmpty())
+                .map(signal -> signal.equalsIgnoreCase("ALL") ? ALL : EnumSet.of(SignalType.valueOf(signal.toUpperCase())))
+                .forEach(types::addAll);
+        return types;
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> flux(String name) {
+        return flux -> {
+            if (!isActive()) {
+                return flux;
+            }
+            var sampleRate = this.sampleRate;
+            var signals = this.signals;
+            return Flux.defer(() -> sampled(sampleRate) ? traced(flux, name, signals) : flux);
+        };
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(String name) {
+        return mono -> {
+            if (!isActive()) {
+                return mono;
+            }
+            var sampleRate = this.sampleRate;
+            var signals = this.signals;
+            return Mono.defer(() -> sampled(sampleRate) ? traced(mono, name, signals) : mono);
+        };
+    }
+
+    public synchronized void configure(boolean enabled, double sampleRate, Set<SignalType> signals) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.signals = signals.isEmpty() ? EnumSet.noneOf(SignalType.class) : EnumSet.copyOf(signals);
+        this.sampleRate = sampleRate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public Set<SignalType> getSignals() {
+        return signals;
+    }
+
+    // Signals lost to a full buffer
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private boolean isActive() {
+        return enabled && sampleRate > 0 && !signals.isEmpty();
+    }
+
+    private static boolean sampled(double sampleRate) {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private <T> Flux<T> traced(Flux<T> flux, String name, Set<SignalType> signals) {
+        var subscription = subscriptions.incrementAndGet();
+        if (signals.contains(SignalType.SUBSCRIBE)) {
+            flux = flux.doOnSubscribe(s -> record(name, subscription, SignalType.SUBSCRIBE, null));
+        }
+        if (signals.contains(SignalType.REQUEST)) {
+            flux = flux.doOnRequest(n -> record(name, subscription, SignalType.REQUEST, n));
+        }
+        if (signals.contains(SignalType.ON_NEXT) || signals.contains(SignalType.ON_ERROR)
+                || signals.contains(SignalType.ON_COMPLETE)) {
+            flux = flux.doOnEach(signal -> {
+                if (signals.contains(signal.getType())) {
+                    record(name, subscription, signal.getType(), signal.isOnError() ? signal.getThrowable() : signal.get());
+                }
+            });
+        }
+        if (signals.contains(SignalType.CANCEL)) {
+            flux = flux.doOnCancel(() -> record(name, subscription, SignalType.CANCEL, null));
+        }
+        return flux;
+    }
+
+    private <T> Mono<T> traced(Mono<T> mono, String name, Set<SignalType> signals) {
+        var subscription = subscriptions.incrementAndGet();
+        if (signals.contains(SignalType.SUBSCRIBE)) {
+            mono = mono.doOnSubscribe(s -> record(name, subscription, SignalType.SUBSCRIBE, null));
+        }
+        if (signals.contains(SignalType.REQUEST)) {
+            mono = mono.doOnRequest(n -> record(name, subscription, SignalType.REQUEST, n));
+        }
+        if (signals.contains(SignalType.ON_NEXT) || signals.contains(SignalType.ON_ERROR)
+                || signals.contains(SignalType.ON_COMPLETE)) {
+            mono = mono.doOnEach(signal -> {
+                if (signals.contains(signal.getType())) {
+                    record(name, subscription, signal.getType(), signal.isOnError() ? signal.getThrowable() : signal.get());
+                }
+            });
+        }
+        if (signals.contains(SignalType.CANCEL)) {
+            mono = mono.doOnCancel(() -> record(name, subscription, SignalType.CANCEL, null));
+        }
+        return mono;
+    }
+
+    // The value is formatted on the drain thread, not on the thread of the signal
+    private void record(String name, long subscription, SignalType type, Object value) {
+        if (!buffer.offer(new TracedSignal(name, subscription, type, value, Thread.currentThread().getName()))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    int buffered() {
+        return buffer.size();
+    }
+
+    void drain() {
+        TracedSignal signal;
+        while ((signal = buffer.poll()) != null) {
+            if (signal.value == null) {
+                log.info("[{}#{}] {} on {}", signal.name, signal.subscription, signal.type, signal.thread);
+            } else {
+                log.info("[{}#{}] {}({}) on {}", signal.name, signal.subscription, signal.type, signal.value, signal.thread);
+            }
+        }
+    }
+
+    // Logs what is still buffered and stops the drain thread
+    public void shutdown() {
+        drain.dispose();
+        drainScheduler.dispose();
+        drain();
+    }
+
+    @AllArgsConstructor
+    private static class TracedSignal {
+        private final String name;
+        private final long subscription;
+        private final SignalType type;
+        private final Object value;
+        private final String thread;
+    }
+}
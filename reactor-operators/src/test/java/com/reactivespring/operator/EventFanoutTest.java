@@ -0,0 +1,111 @@
+package com.reactivespring.operator;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventFanoutTest {
+
+    AtomicInteger dropped = new AtomicInteger();
+
+    private EventFanout<String> fanout(EventFanout.Overflow overflow) {
+        return new EventFanout<>(Sinks.many().multicast().directBestEffort(), 2, overflow, event -> dropped.incrementAndGet());
+    }
+
+    private static void publish(EventFanout<String> fanout, String... names) {
+        List.of(names).forEach(name -> fanout.publish(sequence -> sequence + ":" + name));
+    }
+
+    @Test
+    public void testPublishNumbersTheEvents() {
+        var fanout = fanout(EventFanout.Overflow.DROP);
+
+        StepVerifier.create(fanout.events().take(2))
+                .then(() -> publish(fanout, "Alex", "Ben"))
+                .expectNext("1:Alex", "2:Ben")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFilterRunsBeforeTheBuffer() {
+        var fanout = fanout(EventFanout.Overflow.DROP);
+
+        StepVerifier.create(fanout.events(event -> event.endsWith("Chloe")), 0)
+                .then(() -> publish(fanout, "Alex", "Ben", "Chloe", "Alex"))
+                .thenRequest(1)
+                .expectNext("3:Chloe")
+                .thenCancel()
+                .verify();
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotHoldUpTheOthers() {
+        var fanout = fanout(EventFanout.Overflow.DROP);
+        var fast = fanout.events().take(100).count();
+
+        StepVerifier.create(fanout.events(), 0)
+                .then(() -> StepVerifier.create(fast)
+                        .then(() -> IntStream.range(0, 100).forEach(i -> publish(fanout, "name" + i)))
+                        .expectNext(100L)
+                        .verifyComplete())
+                // Only its first two events were kept, the rest was dropped for it alone
+                .thenRequest(3)
+                .expectNext("1:name0", "2:name1")
+                .thenCancel()
+                .verify();
+        assertEquals(98, dropped.get());
+    }
+
+    @Test
+    public void testLatestKeepsTheNewestEventsOfASlowSubscriber() {
+        var fanout = fanout(EventFanout.Overflow.of("latest"));
+
+        StepVerifier.create(fanout.events(), 0)
+                .then(() -> publish(fanout, "Alex", "Ben", "Chloe", "David"))
+                .thenRequest(2)
+                .expectNext("3:Chloe", "4:David")
+                .thenCancel()
+                .verify();
+        assertEquals(2, dropped.get());
+    }
+
+    @Test
+    public void testDisconnectTerminatesASlowSubscriber() {
+        var fanout = fanout(EventFanout.Overflow.of(" Disconnect "));
+
+        StepVerifier.create(fanout.events(), 0)
+                .then(() -> publish(fanout, "Alex", "Ben", "Chloe"))
+                // The buffered events are still delivered, then the overflow error
+                .thenRequest(2)
+                .expectNext("1:Alex", "2:Ben")
+                .verifyError();
+    }
+
+    @Test
+    public void testWithHeartbeats() {
+        StepVerifier.withVirtualTime(() -> EventFanout.withHeartbeats(Flux.<String>never(), Duration.ofSeconds(15), () -> "heartbeat"))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(15))
+                .expectNext("heartbeat")
+                .thenAwait(Duration.ofSeconds(15))
+                .expectNext("heartbeat")
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testWithHeartbeatsEndsWithTheEvents() {
+        StepVerifier.withVirtualTime(() -> EventFanout.withHeartbeats(Flux.<String>error(new IllegalStateException()),
+                        Duration.ofSeconds(15), () -> "heartbeat"))
+                .verifyError(IllegalStateException.class);
+    }
+}
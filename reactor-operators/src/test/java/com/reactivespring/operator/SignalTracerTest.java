@@ -0,0 +1,105 @@
+package com.reactivespring.operator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SignalTracerTest {
+
+    // Drained by the tests only
+    SignalTracer signalTracer = new SignalTracer(false, 1, SignalTracer.parseSignals("ALL"), 8, Duration.ofHours(1));
+
+    @AfterEach
+    public void tearDown() {
+        signalTracer.shutdown();
+    }
+
+    @Test
+    public void testDisabledReturnsThePipeline() {
+        var flux = Flux.just("Alex");
+        var mono = Mono.just("Alex");
+
+        assertSame(flux, flux.transform(signalTracer.flux("names")));
+        assertSame(mono, mono.transform(signalTracer.mono("names")));
+    }
+
+    @Test
+    public void testZeroSampleRateReturnsThePipeline() {
+        signalTracer.configure(true, 0, SignalTracer.parseSignals("ALL"));
+        var flux = Flux.just("Alex");
+
+        assertSame(flux, flux.transform(signalTracer.flux("names")));
+    }
+
+    @Test
+    public void testTracesTheSelectedSignals() {
+        signalTracer.configure(true, 1, EnumSet.of(SignalType.ON_NEXT, SignalType.ON_COMPLETE));
+
+        StepVerifier.create(Flux.just("Alex", "Ben").transform(signalTracer.flux("names")))
+                .expectNext("Alex", "Ben")
+                .verifyComplete();
+
+        assertEquals(3, signalTracer.buffered());
+        signalTracer.drain();
+        assertEquals(0, signalTracer.buffered());
+    }
+
+    @Test
+    public void testTracesMonoErrorAndCancel() {
+        signalTracer.configure(true, 1, SignalTracer.parseSignals("ALL"));
+
+        StepVerifier.create(Mono.error(new IllegalStateException("boom")).transform(signalTracer.mono("name")))
+                .verifyError(IllegalStateException.class);
+        // onSubscribe, request, onError
+        assertEquals(3, signalTracer.buffered());
+
+        StepVerifier.create(Mono.never().transform(signalTracer.mono("name")))
+                .thenCancel()
+                .verify();
+        assertEquals(6, signalTracer.buffered());
+    }
+
+    @Test
+    public void testSettingsApplyToPipelinesAssembledLater() {
+        signalTracer.configure(true, 1, SignalTracer.parseSignals("ALL"));
+        var traced = Flux.just("Alex").transform(signalTracer.flux("names"));
+        signalTracer.configure(false, 1, SignalTracer.parseSignals("ALL"));
+        var untraced = Flux.just("Alex").transform(signalTracer.flux("names"));
+
+        StepVerifier.create(traced).expectNext("Alex").verifyComplete();
+        StepVerifier.create(untraced).expectNext("Alex").verifyComplete();
+
+        // onSubscribe, request, onNext, onComplete of the traced one only
+        assertEquals(4, signalTracer.buffered());
+    }
+
+    @Test
+    public void testDropsSignalsWhenTheBufferIsFull() {
+        signalTracer.configure(true, 1, EnumSet.of(SignalType.ON_NEXT));
+
+        StepVerifier.create(Flux.range(0, 10).transform(signalTracer.flux("range")))
+                .expectNextCount(10)
+                .verifyComplete();
+
+        assertEquals(8, signalTracer.buffered());
+        assertEquals(2, signalTracer.getDropped());
+    }
+
+    @Test
+    public void testParseSignals() {
+        assertEquals(EnumSet.of(SignalType.ON_NEXT, SignalType.CANCEL), SignalTracer.parseSignals("on_next, CANCEL"));
+        assertEquals(6, SignalTracer.parseSignals("ALL").size());
+        assertThrows(IllegalArgumentException.class, () -> SignalTracer.parseSignals("onNext"));
+        assertThrows(IllegalArgumentException.class, () -> signalTracer.configure(true, -0.1, EnumSet.allOf(SignalType.class)));
+    }
+}
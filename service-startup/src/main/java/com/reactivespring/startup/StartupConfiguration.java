@@ -0,0 +1,74 @@
+package com.reactivespring.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.metrics.StartupStep;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+// Startup mode of the three services, all of it driven by properties. Registered in META-INF/spring.factories,
+// so a service gets it by depending on this project, which gradle/startup.gradle does.
+// spring.main.lazy-initialization=true creates beans on first use, except the ones listed in startup.eager-beans.
+// startup.slowest-beans logs the slowest bean instantiations of the timeline recorded by BufferingApplicationStartup.
+// startup.exit-on-ready stops the JVM once it is ready, the cdsArchive Gradle task uses it as its training run.
+@Configuration(proxyBeanMethods = false)
+@Slf4j
+public class StartupConfiguration {
+
+    private final Environment environment;
+
+    public StartupConfiguration(Environment environment) {
+        this.environment = environment;
+    }
+
+    // Static, filters are needed before any other bean definition is processed
+    @Bean
+    static LazyInitializationExcludeFilter eagerBeans(Environment environment) {
+        var eagerBeans = new HashSet<>(Binder.get(environment)
+                .bind("startup.eager-beans", Bindable.listOf(String.class))
+                .orElseGet(List::of));
+        return (beanName, beanDefinition, beanType) -> eagerBeans.contains(beanName);
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        var context = event.getApplicationContext();
+        log.info("Ready {} ms after JVM start", ManagementFactory.getRuntimeMXBean().getUptime());
+        var slowestBeans = environment.getProperty("startup.slowest-beans", Integer.class, 10);
+        if (slowestBeans > 0 && context.getApplicationStartup() instanceof BufferingApplicationStartup) {
+            var timeline = ((BufferingApplicationStartup) context.getApplicationStartup()).getBufferedTimeline();
+            // A bean's time includes the dependencies created for it
+            timeline.getEvents().stream()
+                    .filter(startupEvent -> startupEvent.getStartupStep().getName().equals("spring.beans.instantiate"))
+                    .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                    .limit(slowestBeans)
+                    .forEach(startupEvent -> log.info("{} ms {}", startupEvent.getDuration().toMillis(),
+                            beanName(startupEvent.getStartupStep())));
+        }
+        if (environment.getProperty("startup.exit-on-ready", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private static String beanName(StartupStep step) {
+        for (var tag : step.getTags()) {
+            if (tag.getKey().equals("beanName")) {
+                return tag.getValue();
+            }
+        }
+        return "?";
+    }
+}